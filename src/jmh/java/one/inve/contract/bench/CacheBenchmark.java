@@ -0,0 +1,74 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.datasource.ReadCache;
+import one.inve.contract.ethplugin.datasource.WriteCache;
+import one.inve.contract.ethplugin.datasource.inmem.HashMapDB;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the caches every repository read and write goes through
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    private byte[][] keys;
+    private byte[] value = new byte[64];
+    private WriteCache.BytesKey<byte[]> simpleWriteCache;
+    private WriteCache.BytesKey<byte[]> countingWriteCache;
+    private ReadCache.BytesKey<byte[]> readCache;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        random.nextBytes(value);
+        keys = new byte[size][32];
+        HashMapDB<byte[]> db = new HashMapDB<>();
+        for (int i = 0; i < size; i++) {
+            random.nextBytes(keys[i]);
+            db.put(keys[i], value);
+        }
+        simpleWriteCache = new WriteCache.BytesKey<>(db, WriteCache.CacheType.SIMPLE);
+        countingWriteCache = new WriteCache.BytesKey<>(new HashMapDB<byte[]>(), WriteCache.CacheType.COUNTING);
+        readCache = new ReadCache.BytesKey<>(db);
+        for (byte[] key : keys) {
+            readCache.get(key);
+        }
+    }
+
+    @Benchmark
+    public void writeCachePut() {
+        next = (next + 1) % size;
+        simpleWriteCache.put(keys[next], value);
+    }
+
+    @Benchmark
+    public byte[] writeCacheGet() {
+        next = (next + 1) % size;
+        return simpleWriteCache.get(keys[next]);
+    }
+
+    @Benchmark
+    public void countingWriteCachePutDelete() {
+        next = (next + 1) % size;
+        countingWriteCache.put(keys[next], value);
+        countingWriteCache.delete(keys[next]);
+    }
+
+    @Benchmark
+    public byte[] readCacheHit() {
+        next = (next + 1) % size;
+        return readCache.get(keys[next]);
+    }
+}
@@ -0,0 +1,81 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.vm.DataWord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 256-bit arithmetic behind the EVM arithmetic opcodes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataWordBenchmark {
+
+    private DataWord a;
+    private DataWord b;
+    private DataWord m;
+    private DataWord small;
+
+    @Setup
+    public void setup() {
+        a = DataWord.of("f0e1d2c3b4a5968778695a4b3c2d1e0f0123456789abcdef0fedcba987654321");
+        b = DataWord.of("00000000000000000000000000000000123456789abcdef0fedcba9876543210");
+        m = DataWord.of("0000000000000000fffffffffffffffffffffffffffffffffffffffffffffffb");
+        small = DataWord.of(97);
+    }
+
+    @Benchmark
+    public DataWord add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public DataWord sub() {
+        return b.sub(a);
+    }
+
+    @Benchmark
+    public DataWord mul() {
+        return a.mul(b);
+    }
+
+    @Benchmark
+    public DataWord div() {
+        return a.div(b);
+    }
+
+    @Benchmark
+    public DataWord sDiv() {
+        return a.sDiv(b);
+    }
+
+    @Benchmark
+    public DataWord mod() {
+        return a.mod(m);
+    }
+
+    @Benchmark
+    public DataWord exp() {
+        return b.exp(small);
+    }
+
+    @Benchmark
+    public DataWord addmod() {
+        return a.addmod(b, m);
+    }
+
+    @Benchmark
+    public DataWord mulmod() {
+        return a.mulmod(b, m);
+    }
+
+    @Benchmark
+    public DataWord shiftRightSigned() {
+        return a.shiftRightSigned(small);
+    }
+}
@@ -0,0 +1,53 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.crypto.HashUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keccak-256 on word sized input (trie keys, SHA3 opcode), on a 1 KiB payload (code, RLP)
+ * and on a batch of trie node sized inputs
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashBenchmark {
+
+    private byte[] word = new byte[32];
+    private byte[] kilobyte = new byte[1024];
+    private List<byte[]> nodes = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        random.nextBytes(word);
+        random.nextBytes(kilobyte);
+        for (int i = 0; i < 16; i++) {
+            byte[] node = new byte[100];
+            random.nextBytes(node);
+            nodes.add(node);
+        }
+    }
+
+    @Benchmark
+    public byte[] sha3Word() {
+        return HashUtil.sha3(word);
+    }
+
+    @Benchmark
+    public byte[] sha3Kilobyte() {
+        return HashUtil.sha3(kilobyte);
+    }
+
+    @Benchmark
+    public byte[][] sha3Nodes() {
+        return HashUtil.sha3(nodes);
+    }
+}
@@ -0,0 +1,56 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.vm.PrecompiledContracts.BN128Multiplication;
+import one.inve.contract.ethplugin.vm.PrecompiledContracts.BN128Pairing;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BN128 scalar multiplication and a two pair pairing check, e(P, Q) * e(-P, Q) = 1,
+ * as called by zk-SNARK verifier contracts
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrecompileBenchmark {
+
+    private static final String G1 =
+            "0000000000000000000000000000000000000000000000000000000000000001" +
+            "0000000000000000000000000000000000000000000000000000000000000002";
+    private static final String G1_NEG =
+            "0000000000000000000000000000000000000000000000000000000000000001" +
+            "30644e72e131a029b85045b68181585d97816a916871ca8d3c208c16d87cfd45";
+    private static final String G2 =
+            "198e9393920d483a7260bfb731fb5d25f1aa493335a9e71297e485b7aef312c2" +
+            "1800deef121f1e76426a00665e5c4479674322d4f75edadd46debd5cd992f6ed" +
+            "090689d0585ff075ec9e99ad690c3395bc4b313370b38ef355acdadcd122975b" +
+            "12c85ea5db8c6deb4aab71808dcb408fe3d1e7690c43d37b4ce6cc0166fa7daa";
+
+    private final BN128Multiplication mul = new BN128Multiplication();
+    private final BN128Pairing pairing = new BN128Pairing();
+
+    private byte[] mulInput;
+    private byte[] pairingInput;
+
+    @Setup
+    public void setup() {
+        mulInput = Hex.decode(G1 + "30644e72e131a029b85045b68181585d2833e84879b9709143e1f593f0000000");
+        pairingInput = Hex.decode(G1 + G2 + G1_NEG + G2);
+    }
+
+    @Benchmark
+    public Pair<Boolean, byte[]> bn128Mul() {
+        return mul.execute(mulInput);
+    }
+
+    @Benchmark
+    public Pair<Boolean, byte[]> bn128Pairing() {
+        return pairing.execute(pairingInput);
+    }
+}
@@ -0,0 +1,66 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.util.RLP;
+import one.inve.contract.ethplugin.util.RLPList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RLP encoding and decoding of a list shaped like a transaction batch
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RLPBenchmark {
+
+    @Param({"100"})
+    public int items;
+
+    private byte[][] fields;
+    private byte[][] encodedItems;
+    private byte[] encodedList;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        // nonce, gas price, gas limit, receiver, value, data
+        int[] fieldSizes = {2, 5, 3, 20, 9, 68};
+        fields = new byte[fieldSizes.length][];
+        encodedItems = new byte[items][];
+        for (int i = 0; i < items; i++) {
+            byte[][] encodedFields = new byte[fieldSizes.length][];
+            for (int f = 0; f < fieldSizes.length; f++) {
+                byte[] field = new byte[fieldSizes[f]];
+                random.nextBytes(field);
+                fields[f] = field;
+                encodedFields[f] = RLP.encodeElement(field);
+            }
+            encodedItems[i] = RLP.encodeList(encodedFields);
+        }
+        encodedList = RLP.encodeList(encodedItems);
+    }
+
+    @Benchmark
+    public byte[] encodeList() {
+        byte[][] encodedFields = new byte[fields.length][];
+        for (int f = 0; f < fields.length; f++) {
+            encodedFields[f] = RLP.encodeElement(fields[f]);
+        }
+        return RLP.encodeList(encodedFields);
+    }
+
+    @Benchmark
+    public byte[] encodeBatch() {
+        return RLP.encodeList(encodedItems);
+    }
+
+    @Benchmark
+    public RLPList decode2() {
+        return RLP.decode2(encodedList);
+    }
+}
@@ -0,0 +1,63 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.datasource.DbSettings;
+import one.inve.contract.ethplugin.util.ByteArrayMap;
+import one.inve.contract.ethplugin.util.FileUtil;
+import one.inve.contract.inve.INVERocksDbDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched writes as issued by a repository commit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RocksDbBenchmark {
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private String dir;
+    private INVERocksDbDataSource dataSource;
+    private Map<byte[], byte[]> batch;
+    private Random random = new Random(1);
+
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("rocksdb-bench").toString();
+        dataSource = new INVERocksDbDataSource(dir, "state");
+        dataSource.init(DbSettings.DEFAULT);
+        batch = new ByteArrayMap<>();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+        FileUtil.recursiveDelete(dir);
+    }
+
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        batch.clear();
+        for (int i = 0; i < batchSize; i++) {
+            byte[] key = new byte[32];
+            byte[] value = new byte[100];
+            random.nextBytes(key);
+            random.nextBytes(value);
+            batch.put(key, value);
+        }
+    }
+
+    @Benchmark
+    public void updateBatch() {
+        dataSource.updateBatch(batch);
+    }
+}
@@ -0,0 +1,72 @@
+package one.inve.contract.bench;
+
+import one.inve.contract.ethplugin.datasource.inmem.HashMapDB;
+import one.inve.contract.ethplugin.trie.TrieImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State trie updates, lookups and root hash calculation over an in-memory node store
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrieBenchmark {
+
+    @Param({"1000"})
+    public int size;
+
+    private byte[][] keys;
+    private byte[][] values;
+    private TrieImpl trie;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        keys = new byte[size][32];
+        values = new byte[size][70];
+        for (int i = 0; i < size; i++) {
+            random.nextBytes(keys[i]);
+            random.nextBytes(values[i]);
+        }
+        trie = new TrieImpl(new HashMapDB<byte[]>());
+        for (int i = 0; i < size; i++) {
+            trie.put(keys[i], values[i]);
+        }
+        trie.getRootHash();
+    }
+
+    /**
+     * Fills an empty trie and hashes it, roughly one block worth of account updates
+     */
+    @Benchmark
+    public byte[] putAndRootHash() {
+        TrieImpl fresh = new TrieImpl(new HashMapDB<byte[]>());
+        for (int i = 0; i < size; i++) {
+            fresh.put(keys[i], values[i]);
+        }
+        return fresh.getRootHash();
+    }
+
+    @Benchmark
+    public byte[] get() {
+        next = (next + 1) % size;
+        return trie.get(keys[next]);
+    }
+
+    /**
+     * Single update of a populated trie followed by rehashing of the changed path
+     */
+    @Benchmark
+    public byte[] updateRootHash() {
+        next = (next + 1) % size;
+        trie.put(keys[next], values[(next + 1) % size]);
+        return trie.getRootHash();
+    }
+}
@@ -0,0 +1,140 @@
+package one.inve.contract.bench;
+
+import com.typesafe.config.ConfigFactory;
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.core.Block;
+import one.inve.contract.ethplugin.core.Repository;
+import one.inve.contract.ethplugin.core.Transaction;
+import one.inve.contract.ethplugin.datasource.inmem.HashMapDB;
+import one.inve.contract.ethplugin.db.BlockStoreDummy;
+import one.inve.contract.ethplugin.util.ByteUtil;
+import one.inve.contract.ethplugin.vm.program.ProgramResult;
+import one.inve.contract.inve.INVERepositoryRoot;
+import one.inve.contract.inve.vm.VM;
+import one.inve.contract.inve.vm.hook.VMHook;
+import one.inve.contract.inve.vm.program.INVEProgram;
+import one.inve.contract.inve.vm.program.invoke.INVEProgramInvoke;
+import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactoryImpl;
+import org.openjdk.jmh.annotations.*;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole contract calls through {@link VM#play(INVEProgram)} on representative bytecode.
+ * Every invocation runs on a fresh track over an in-memory repository, so storage writes never accumulate.
+ * The traced variants run the same code with structured tracing on, the difference is the per operation
+ * cost of the trace and the program listeners
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VMBenchmark {
+
+    /**
+     * Token transfer: balances[caller] -= amount; balances[to] += amount with balances at slot 0,
+     * i.e. two keccak slot lookups, two SLOADs and two SSTOREs, returns true
+     */
+    private static final byte[] TRANSFER = Hex.decode(
+            "336000526000602052604060002080546024359003905560043560005260406000208054602435019055"
+                    + "600160005260206000f3");
+
+    /**
+     * 256 iterations of hashing 64 bytes of memory and storing the hash back
+     */
+    private static final byte[] KECCAK_LOOP = Hex.decode("6101005b6040600020600052600190038060035700");
+
+    /**
+     * 256 iterations of SSTORE(i, i) followed by SLOAD(i)
+     */
+    private static final byte[] STORAGE_LOOP = Hex.decode("6101005b808055805450600190038060035700");
+
+    /**
+     * 256 iterations of PUSH, DUP, ADD, POP, SWAP and SUB, i.e. stack operations only
+     */
+    private static final byte[] ARITHMETIC_LOOP = Hex.decode("6101005b6001810150600190038060035700");
+
+    private static final SystemProperties TRACED_CONFIG =
+            new SystemProperties(ConfigFactory.parseString("vm.structured.trace = true"));
+
+    private static final byte[] CONTRACT = Hex.decode("00000000000000000000000000000000000000c0");
+    private static final byte[] SENDER = Hex.decode("00000000000000000000000000000000000000a1");
+    private static final byte[] RECEIVER = Hex.decode("00000000000000000000000000000000000000b2");
+
+    private final VM vm = new VM();
+    private final INVEProgramInvokeFactoryImpl invokeFactory = new INVEProgramInvokeFactoryImpl();
+    private final BlockStoreDummy blockStore = new BlockStoreDummy();
+    private INVERepositoryRoot repository;
+    private Block block;
+    private Transaction transferTx;
+    private Transaction loopTx;
+
+    @Setup
+    public void setup() {
+        repository = new INVERepositoryRoot(new HashMapDB<byte[]>(), new HashMapDB<byte[]>(), null);
+        repository.createAccount(CONTRACT);
+        repository.addBalance(SENDER, BigInteger.TEN.pow(24));
+        repository.commit();
+        block = SystemProperties.getDefault().getGenesis();
+
+        byte[] transferData = new byte[68];
+        System.arraycopy(Hex.decode("a9059cbb"), 0, transferData, 0, 4);
+        System.arraycopy(RECEIVER, 0, transferData, 4 + 12, 20);
+        transferData[67] = 100;
+        transferTx = newTx(transferData);
+        loopTx = newTx(new byte[0]);
+    }
+
+    private static Transaction newTx(byte[] data) {
+        Transaction tx = new Transaction(ByteUtil.intToBytes(0), ByteUtil.longToBytesNoLeadZeroes(1),
+                ByteUtil.longToBytesNoLeadZeroes(10_000_000), CONTRACT, ByteUtil.intToBytes(0), data);
+        tx.setSender(SENDER);
+        return tx;
+    }
+
+    private ProgramResult run(byte[] code, Transaction tx) {
+        return run(code, tx, SystemProperties.getDefault());
+    }
+
+    private ProgramResult run(byte[] code, Transaction tx, SystemProperties config) {
+        Repository track = repository.startTracking();
+        INVEProgramInvoke invoke = invokeFactory.createProgramInvoke(tx, block, track, blockStore);
+        INVEProgram program = new INVEProgram(code, invoke, tx, config, VMHook.EMPTY);
+        vm.play(program);
+        return program.getResult();
+    }
+
+    @Benchmark
+    public ProgramResult erc20Transfer() {
+        return run(TRANSFER, transferTx);
+    }
+
+    @Benchmark
+    public ProgramResult keccakLoop() {
+        return run(KECCAK_LOOP, loopTx);
+    }
+
+    @Benchmark
+    public ProgramResult storageLoop() {
+        return run(STORAGE_LOOP, loopTx);
+    }
+
+    @Benchmark
+    public ProgramResult arithmeticLoop() {
+        return run(ARITHMETIC_LOOP, loopTx);
+    }
+
+    @Benchmark
+    public ProgramResult arithmeticLoopTraced() {
+        return run(ARITHMETIC_LOOP, loopTx, TRACED_CONFIG);
+    }
+
+    @Benchmark
+    public ProgramResult storageLoopTraced() {
+        return run(STORAGE_LOOP, loopTx, TRACED_CONFIG);
+    }
+}
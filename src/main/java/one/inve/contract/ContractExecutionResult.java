@@ -0,0 +1,45 @@
+package one.inve.contract;
+
+import one.inve.contract.inve.InternalTransferData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单条合约消息的执行结果：执行状态、错误信息以及余额变动列表
+ */
+public class ContractExecutionResult {
+    private boolean success;
+    private String error;
+    private List<InternalTransferData> internalTransferDataList;
+
+    public ContractExecutionResult(boolean success, String error, List<InternalTransferData> internalTransferDataList) {
+        this.success = success;
+        this.error = error;
+        this.internalTransferDataList = internalTransferDataList == null ?
+                new ArrayList<InternalTransferData>() : internalTransferDataList;
+    }
+
+    public static ContractExecutionResult failed(String error) {
+        return new ContractExecutionResult(false, error, null);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public List<InternalTransferData> getInternalTransferDataList() {
+        return internalTransferDataList;
+    }
+
+    public String toString() {
+        return new StringBuffer()
+            .append(" success: ").append(success)
+            .append(" error: ").append(error != null ? error : "")
+            .append(" internalTransfers: ").append(internalTransferDataList.size()).toString();
+    }
+}
@@ -1,6 +1,7 @@
 package one.inve.contract.MVM;
 
 import one.inve.bean.message.ContractMessage;
+import one.inve.contract.ContractExecutionResult;
 import one.inve.contract.ContractTransactionData;
 import one.inve.contract.encoding.MarshalAndUnMarshal;
 import one.inve.contract.ethplugin.config.SystemProperties;
@@ -8,10 +9,13 @@ import one.inve.contract.ethplugin.core.Repository;
 import one.inve.contract.ethplugin.core.Transaction;
 import one.inve.contract.ethplugin.core.TransactionExecutionSummary;
 import one.inve.contract.ethplugin.db.BlockStoreDummy;
+import one.inve.contract.ethplugin.util.ByteUtil;
 import one.inve.contract.ethplugin.vm.program.ProgramResult;
+import one.inve.contract.inve.INVEParallelTransactionExecutor;
 import one.inve.contract.inve.INVERepositoryRoot;
 import one.inve.contract.inve.INVETransactionExecutor;
 import one.inve.contract.inve.INVETransactionReceipt;
+import one.inve.contract.inve.INVEViewExecutor;
 import one.inve.contract.inve.InternalTransferData;
 import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactoryImpl;
 import one.inve.contract.provider.RepositoryProvider;
@@ -22,6 +26,7 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,20 +46,24 @@ public class WorldStateService {
 	 * @return true | false
 	 */
 	protected static boolean increaseBalance(String dbId, String address, BigInteger value) {
-		Repository track = getTrack(dbId);
-		if (!track.isExist(address.getBytes())) {
-			track.createAccount(address.getBytes());
-		}
-		if (track.getBalance(address.getBytes()).compareTo(new BigInteger("0")) >= 0) {
-			track.addBalance(address.getBytes(), value);
+		Repository track = RepositoryProvider.acquireTrack(dbId);
+		try {
+			if (!track.isExist(address.getBytes())) {
+				track.createAccount(address.getBytes());
+			}
+			if (track.getBalance(address.getBytes()).compareTo(new BigInteger("0")) >= 0) {
+				track.addBalance(address.getBytes(), value);
 
-			((INVERepositoryRoot) track).commit(dbId);
-			return true;
-		}
+				((INVERepositoryRoot) track).commit(dbId);
+				return true;
+			}
 
-		logger.error("Invalid address[{}], the balance of address is {}", address,
-				track.getBalance(address.getBytes()));
-		return false;
+			logger.error("Invalid address[{}], the balance of address is {}", address,
+					track.getBalance(address.getBytes()));
+			return false;
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
 	}
 
 	/**
@@ -65,14 +74,18 @@ public class WorldStateService {
 	 * @return true | false
 	 */
 	protected static boolean decreaseBalance(String dbId, String address, BigInteger value) {
-		Repository track = getTrack(dbId);
-		if (track.isExist(address.getBytes()) && track.getBalance(address.getBytes()).compareTo(value) >= 0) {
-			track.addBalance(address.getBytes(), value.negate());
-			return true;
-		}
+		Repository track = RepositoryProvider.acquireTrack(dbId);
+		try {
+			if (track.isExist(address.getBytes()) && track.getBalance(address.getBytes()).compareTo(value) >= 0) {
+				track.addBalance(address.getBytes(), value.negate());
+				return true;
+			}
 
-		logger.error("Not enough balance, the balance of address[{}] is less than {}", address, value);
-		return false;
+			logger.error("Not enough balance, the balance of address[{}] is less than {}", address, value);
+			return false;
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
 	}
 
 	/**
@@ -105,12 +118,18 @@ public class WorldStateService {
 			specialPermission = true;
 		}
 
-		if (!specialPermission) { // 不存在特许转账：GOD_ADDRESS --> foundation_address
-			result = decreaseBalance(dbId, fromAddr, value);
-		}
+		// 两次余额变动期间持有引用，保证在同一个 track 上执行
+		RepositoryProvider.acquireTrack(dbId);
+		try {
+			if (!specialPermission) { // 不存在特许转账：GOD_ADDRESS --> foundation_address
+				result = decreaseBalance(dbId, fromAddr, value);
+			}
 
-		if (result || specialPermission) {
-			result = increaseBalance(dbId, toAddr, value);
+			if (result || specialPermission) {
+				result = increaseBalance(dbId, toAddr, value);
+			}
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
 		}
 
 		return result;
@@ -161,11 +180,12 @@ public class WorldStateService {
 			throw new NullPointerException("Get balance failed, address is null or empty.");
 		}
 
-		return getTrack(dbId).getBalance(address.getBytes());
-	}
-
-	private static Repository getTrack(String dbId) {
-		return RepositoryProvider.getTrack(dbId);
+		Repository track = RepositoryProvider.acquireTrack(dbId);
+		try {
+			return track.getBalance(address.getBytes());
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
 	}
 
 	/**
@@ -173,12 +193,121 @@ public class WorldStateService {
 	 */
 	protected static List<InternalTransferData> executeTransaction(String dbId, ContractTransactionData ct,
 			byte[] fromAddr, byte[] signatrue) {
+		Repository track = RepositoryProvider.acquireTrack(dbId);
+		try {
+			ContractExecutionResult result = applyTransaction(track, ct, fromAddr, signatrue);
+
+			// 入库
+			if (track instanceof INVERepositoryRoot) {
+				((INVERepositoryRoot) track).commit(dbId);
+			}
+			logger.debug("Sender nonce after commit is: {}", track.getNonce(fromAddr).longValue());
+			logger.debug("\n\n");
+
+			return result.getInternalTransferDataList();
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
+	}
+
+	/**
+	 * 批量执行合约消息：整批消息在同一个 track 上依次执行，收据全部写入后只提交一次（只计算一次 roothash，
+	 * 只写一次数据库）
+	 *
+	 * @param dbId
+	 * @param contractMsgs
+	 * @return List<ContractExecutionResult> 与 contractMsgs 顺序一一对应
+	 * @throws NullPointerException
+	 */
+	public static List<ContractExecutionResult> executeContractMessages(String dbId, List<ContractMessage> contractMsgs)
+			throws NullPointerException {
+		if (contractMsgs == null) {
+			logger.error("Execute contract txs failed, ContractMessage list is null.");
+			throw new NullPointerException("Execute contract txs failed, ContractMessage list is null.");
+		}
+
+		long start = System.currentTimeMillis();
+
+		List<ContractExecutionResult> results = new ArrayList<>(contractMsgs.size());
+		Repository track = RepositoryProvider.acquireTrack(dbId);
+		try {
+			// 批量执行期间独占 track，避免其他写入穿插到本批次的提交中
+			synchronized (track) {
+				List<Transaction> txs = new ArrayList<>(contractMsgs.size());
+				List<byte[]> signatures = new ArrayList<>(contractMsgs.size());
+				for (ContractMessage contractMsg : contractMsgs) {
+					if (contractMsg == null) {
+						logger.error("Skip contract tx, ContractMessage is null.");
+						results.add(ContractExecutionResult.failed("ContractMessage is null"));
+						continue;
+					}
+
+					ContractTransactionData ct;
+					try {
+						ct = MarshalAndUnMarshal.unmarshal(contractMsg.getData(), ContractTransactionData.class);
+					} catch (Exception e) {
+						logger.error("Unmarshal contract message failed.", e);
+						results.add(ContractExecutionResult.failed("Unmarshal contract message failed"));
+						continue;
+					}
+
+					txs.add(newTransaction(ct, contractMsg.getFromAddress().getBytes()));
+					signatures.add(contractMsg.getSignature().getBytes());
+					// 占位，执行后按顺序填入结果
+					results.add(null);
+				}
+
+				List<ContractExecutionResult> executed = new ArrayList<>(txs.size());
+				if (SystemProperties.getDefault().executionParallelism() > 1 && track instanceof INVERepositoryRoot) {
+					// 乐观并行执行，冲突的交易按顺序重新执行，结果与串行执行一致
+					List<INVEParallelTransactionExecutor.Result> txResults =
+							INVEParallelTransactionExecutor.execute((INVERepositoryRoot) track, txs);
+					for (int i = 0; i < txs.size(); i++) {
+						INVEParallelTransactionExecutor.Result txResult = txResults.get(i);
+						executed.add(toResult(track, txResult.getExecutor(), txResult.getSummary(), signatures.get(i)));
+					}
+				} else {
+					for (int i = 0; i < txs.size(); i++) {
+						executed.add(applyTransaction(track, txs.get(i), signatures.get(i)));
+					}
+				}
+				for (int i = 0, j = 0; i < results.size(); i++) {
+					if (results.get(i) == null) {
+						results.set(i, executed.get(j++));
+					}
+				}
+
+				// 整批只入库一次
+				if (track instanceof INVERepositoryRoot) {
+					((INVERepositoryRoot) track).commit(dbId);
+				}
+			}
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
+
+		long end = System.currentTimeMillis();
+		logger.debug("Smart contract batch of {} transactions execution time: {} ms.", contractMsgs.size(), end - start);
+		return results;
+	}
+
+	private static Transaction newTransaction(ContractTransactionData ct, byte[] fromAddr) {
 		Transaction tx = new Transaction(ct.getNonce(), ct.getGasPrice(), ct.getGasLimit(), ct.getToAddress(),
 				ct.getValue(), ct.getCalldata());
 		tx.setSender(fromAddr);
+		return tx;
+	}
 
-		Repository track = getTrack(dbId);
+	/**
+	 * 在指定 track 上执行一笔交易并写入收据，不提交
+	 */
+	private static ContractExecutionResult applyTransaction(Repository track, ContractTransactionData ct,
+			byte[] fromAddr, byte[] signatrue) {
+		return applyTransaction(track, newTransaction(ct, fromAddr), signatrue);
+	}
 
+	private static ContractExecutionResult applyTransaction(Repository track, Transaction tx, byte[] signatrue) {
+		byte[] fromAddr = tx.getSender();
 		INVETransactionExecutor executor = new INVETransactionExecutor(tx, track, new BlockStoreDummy(),
 				new INVEProgramInvokeFactoryImpl(), SystemProperties.getDefault().getGenesis());
 
@@ -190,7 +319,16 @@ public class WorldStateService {
 		executor.execute();
 		executor.go();
 		TransactionExecutionSummary summary = executor.finalization();
-		List<InternalTransferData> internalTransferDataList = summary.getBalanceChanges();
+		return toResult(track, executor, summary, signatrue);
+	}
+
+	/**
+	 * 根据已执行完毕的交易生成执行结果，并在 track 上写入收据
+	 */
+	private static ContractExecutionResult toResult(Repository track, INVETransactionExecutor executor,
+			TransactionExecutionSummary summary, byte[] signatrue) {
+		List<InternalTransferData> internalTransferDataList = summary == null ?
+				new ArrayList<InternalTransferData>() : summary.getBalanceChanges();
 		if (logger.isDebugEnabled()) {
 			logger.debug("==> Ready to print balance changes:");
 			for (InternalTransferData bd : internalTransferDataList) {
@@ -200,8 +338,9 @@ public class WorldStateService {
 
 		// 交易执行的收据信息
 		INVETransactionReceipt receipt = executor.getReceipt();
+		Transaction tx = receipt.getTransaction();
 		logger.info("TX {} execution result: {}", tx.hashCode(), receipt.isTxStatusOK());
-		logger.debug("Sender nonce after exec is: {}", track.getNonce(fromAddr).longValue());
+		logger.debug("Sender nonce after exec is: {}", track.getNonce(tx.getSender()).longValue());
 
 		// 程序执行结果
 		ProgramResult result = executor.getResult();
@@ -213,13 +352,9 @@ public class WorldStateService {
 		// 存储交易收据
 		if (track instanceof INVERepositoryRoot) { // 只有蒿师兄的存储实现才有对交易 receipt 的存储功能
 			((INVERepositoryRoot) track).setReceipt(signatrue, receipt.getEncoded());
-			// 入库
-			((INVERepositoryRoot) track).commit(dbId);
 		}
-		logger.debug("Sender nonce after commit is: {}", track.getNonce(fromAddr).longValue());
-		logger.debug("\n\n");
 
-		return internalTransferDataList;
+		return new ContractExecutionResult(receipt.isTxStatusOK(), receipt.getError(), internalTransferDataList);
 	}
 
 	/**
@@ -229,11 +364,14 @@ public class WorldStateService {
 	 * @return byte[]
 	 */
 	public static byte[] getRoothash(String dbId) {
-		Repository track = getTrack(dbId);
-
-		// TODO 備份數據庫以及考慮恢復
+		Repository track = RepositoryProvider.acquireTrack(dbId);
+		try {
+			// TODO 備份數據庫以及考慮恢復
 
-		return ((INVERepositoryRoot) track).getRoot();
+			return ((INVERepositoryRoot) track).getRoot();
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
 	}
 
 
@@ -248,7 +386,7 @@ public class WorldStateService {
         Transaction tx = new Transaction(
             ByteBuffer.allocate(4).putInt(0).array(),   // nonce
             ByteBuffer.allocate(4).putInt(10).array(),   // gas price
-            ByteBuffer.allocate(4).putInt(2000000).array(),   // gas limit
+            ByteUtil.longToBytesNoLeadZeroes(SystemProperties.getDefault().viewGasLimit()),   // gas limit
             address.getBytes(),                         // to address
             ByteBuffer.allocate(4).putInt(0).array(),   // value
             Hex.decode(callData)
@@ -256,19 +394,8 @@ public class WorldStateService {
 
         tx.setSender("TGAX77OVU3AGOYGKUF5IFGZVRQJ23ZFB".getBytes());
 
-        Repository track = getTrack(dbId);
-        INVETransactionExecutor executor = new INVETransactionExecutor(
-            tx, track,
-            new BlockStoreDummy(),
-            new INVEProgramInvokeFactoryImpl(),
-            SystemProperties.getDefault().getGenesis()
-        ).setLocalCall(true);
-
-        executor.init();
-        executor.execute();
-        executor.go();
-
-        return executor.getResult().getHReturn();
+        // 在最近一次提交的状态快照上执行，不阻塞写入
+        return INVEViewExecutor.call(dbId, tx);
     }
 
 	/**
@@ -279,10 +406,14 @@ public class WorldStateService {
 	 * @return			BigInteger 余额
 	 */
     public static BigInteger getBalance(String cfgDir, String dbPath, String dbId, String address) {
-		Repository track = RepositoryProvider.getTrackByPath(cfgDir, dbPath, dbId);
-		BigInteger balance = track.getBalance(address.getBytes());
-		logger.info("balance of '{}' is: {}", address, balance.toString());
-		return balance;
+		Repository track = RepositoryProvider.acquireTrackByPath(cfgDir, dbPath, dbId);
+		try {
+			BigInteger balance = track.getBalance(address.getBytes());
+			logger.info("balance of '{}' is: {}", address, balance.toString());
+			return balance;
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
 	}
 
 	/**
@@ -294,16 +425,19 @@ public class WorldStateService {
 	 * @param value		要设定的余额
 	 */
 	public static void setBalance(String cfgDir, String dbPath, String dbId, String address, BigInteger value) {
-		Repository track = RepositoryProvider.getTrackByPath(cfgDir, dbPath, dbId);
-
-		// 讀取餘額
-		BigInteger balance = track.getBalance(address.getBytes());
-		// 餘額清零
-		track.addBalance(address.getBytes(), balance.negate());
-		// 直接設置餘額
-		track.addBalance(address.getBytes(), value);
-		// force it to commit root
-		((INVERepositoryRoot) track).commit(cfgDir, dbId);
+		Repository track = RepositoryProvider.acquireTrackByPath(cfgDir, dbPath, dbId);
+		try {
+			// 讀取餘額
+			BigInteger balance = track.getBalance(address.getBytes());
+			// 餘額清零
+			track.addBalance(address.getBytes(), balance.negate());
+			// 直接設置餘額
+			track.addBalance(address.getBytes(), value);
+			// force it to commit root
+			((INVERepositoryRoot) track).commit(cfgDir, dbId);
+		} finally {
+			RepositoryProvider.releaseTrack(dbId);
+		}
 		logger.info("balance of '{}' updated: {}", address, value.toString());
 	}
 
@@ -316,7 +450,11 @@ public class WorldStateService {
      * @return
      */
     public static Boolean isAddressExist(String cfgDir, String dbPath, String dbId, String address) {
-        Repository track = RepositoryProvider.getTrackByPath(cfgDir, dbPath, dbId);
-        return track.isExist(address.getBytes());
+        Repository track = RepositoryProvider.acquireTrackByPath(cfgDir, dbPath, dbId);
+        try {
+            return track.isExist(address.getBytes());
+        } finally {
+            RepositoryProvider.releaseTrack(dbId);
+        }
     }
 }
\ No newline at end of file
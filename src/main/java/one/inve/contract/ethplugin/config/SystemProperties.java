@@ -118,6 +118,7 @@ public class SystemProperties {
     private BlockchainNetConfig blockchainConfig;
     private Genesis genesis;
     private Boolean vmTrace;
+    private Boolean vmBlockGas;
     private Boolean recordInternalTransactionsData;
 
     private final ClassLoader classLoader;
@@ -426,6 +427,96 @@ public class SystemProperties {
         return config.getString("crypto.hash.alg512");
     }
 
+    @ValidateMe
+    public int repositoryIdleCloseTimeout() {
+        return config.getInt("inve.repository.idleCloseTimeout");
+    }
+
+    @ValidateMe
+    public int repositoryNodeCacheSize() {
+        return config.getInt("inve.repository.nodeCacheSize");
+    }
+
+    @ValidateMe
+    public int repositoryNodeCacheTotalSize() {
+        return config.getInt("inve.repository.nodeCacheTotalSize");
+    }
+
+    @ValidateMe
+    public boolean repositoryNodeCacheOffHeap() {
+        return config.getBoolean("inve.repository.nodeCacheOffHeap");
+    }
+
+    @ValidateMe
+    public int repositoryHashingThreads() {
+        return config.getInt("inve.repository.hashingThreads");
+    }
+
+    @ValidateMe
+    public long repositoryCodeCacheSize() {
+        return config.getBytes("inve.repository.codeCacheSize");
+    }
+
+    @ValidateMe
+    public List<String> repositoryPinnedContracts() {
+        return config.getStringList("inve.repository.pinnedContracts");
+    }
+
+    @ValidateMe
+    public int executionParallelism() {
+        return config.getInt("inve.execution.parallelism");
+    }
+
+    @ValidateMe
+    public int viewThreads() {
+        return config.getInt("inve.view.threads");
+    }
+
+    @ValidateMe
+    public long viewGasLimit() {
+        return config.getLong("inve.view.gasLimit");
+    }
+
+    @ValidateMe
+    public int viewTimeout() {
+        return config.getInt("inve.view.timeout");
+    }
+
+    @ValidateMe
+    public boolean vmBlockGas() {
+        return vmBlockGas == null ? (vmBlockGas = config.getBoolean("inve.vm.blockGas")) : vmBlockGas;
+    }
+
+    @ValidateMe
+    public int vmPrecompileCacheSize() {
+        return config.getInt("inve.vm.precompileCacheSize");
+    }
+
+    @ValidateMe
+    public long vmCodeCacheSize() {
+        return config.getBytes("inve.vm.codeCacheSize");
+    }
+
+    @ValidateMe
+    public boolean vmTraceStream() {
+        return config.getBoolean("inve.vm.trace.stream");
+    }
+
+    @ValidateMe
+    public int vmTraceSampleEvery() {
+        return config.getInt("inve.vm.trace.sampleEvery");
+    }
+
+    @ValidateMe
+    public List<String> vmTraceContracts() {
+        return config.getStringList("inve.vm.trace.contracts");
+    }
+
+    @ValidateMe
+    public long vmTraceMaxSize() {
+        return config.getBytes("inve.vm.trace.maxSize");
+    }
+
     private GenesisJson getGenesisJson() {
         if (genesisJson == null) {
             genesisJson = GenesisLoader.loadGenesisJson(this, classLoader);
@@ -21,8 +21,8 @@ import one.inve.contract.ethplugin.config.BlockchainConfig;
 import one.inve.contract.ethplugin.config.SystemProperties;
 import one.inve.contract.ethplugin.util.ByteUtil;
 import one.inve.contract.ethplugin.util.FastByteComparisons;
-import one.inve.contract.ethplugin.util.RLP;
-import one.inve.contract.ethplugin.util.RLPList;
+import one.inve.contract.ethplugin.util.RLPReader;
+import one.inve.contract.ethplugin.util.RLPWriter;
 
 import java.math.BigInteger;
 
@@ -81,11 +81,11 @@ public class AccountState {
     public AccountState(byte[] rlpData) {
         this.rlpEncoded = rlpData;
 
-        RLPList items = (RLPList) RLP.decode2(rlpEncoded).get(0);
-        this.nonce = ByteUtil.bytesToBigInteger(items.get(0).getRLPData());
-        this.balance = ByteUtil.bytesToBigInteger(items.get(1).getRLPData());
-        this.stateRoot = items.get(2).getRLPData();
-        this.codeHash = items.get(3).getRLPData();
+        RLPReader items = RLPReader.list(rlpEncoded);
+        this.nonce = ByteUtil.bytesToBigInteger(items.next().getRLPData());
+        this.balance = ByteUtil.bytesToBigInteger(items.next().getRLPData());
+        this.stateRoot = items.next().getRLPData();
+        this.codeHash = items.next().getRLPData();
     }
 
     public BigInteger getNonce() {
@@ -126,11 +126,12 @@ public class AccountState {
 
     public byte[] getEncoded() {
         if (rlpEncoded == null) {
-            byte[] nonce = RLP.encodeBigInteger(this.nonce);
-            byte[] balance = RLP.encodeBigInteger(this.balance);
-            byte[] stateRoot = RLP.encodeElement(this.stateRoot);
-            byte[] codeHash = RLP.encodeElement(this.codeHash);
-            this.rlpEncoded = RLP.encodeList(nonce, balance, stateRoot, codeHash);
+            this.rlpEncoded = new RLPWriter(96).startList()
+                    .writeBigInteger(nonce)
+                    .writeBigInteger(balance)
+                    .writeBytes(stateRoot)
+                    .writeBytes(codeHash)
+                    .endList().toByteArray();
         }
         return rlpEncoded;
     }
@@ -197,28 +197,32 @@ public class Transaction {
     public synchronized void rlpParse() {
         if (parsed) return;
         try {
-            RLPList decodedTxList = RLP.decode2(rlpEncoded);
-            RLPList transaction = (RLPList) decodedTxList.get(0);
-
-            // Basic verification
-            if (transaction.size() > 9 ) throw new RuntimeException("Too many RLP elements");
-            for (RLPElement rlpElement : transaction) {
-                if (!(rlpElement instanceof RLPItem))
+            // items are read in place, only the fields are copied
+            byte[][] items = new byte[9][];
+            RLPReader transaction = RLPReader.list(rlpEncoded);
+            int size = 0;
+            while (transaction.hasNext()) {
+                // Basic verification
+                if (size == 9) throw new RuntimeException("Too many RLP elements");
+                if (transaction.next().isList())
                     throw new RuntimeException("Transaction RLP elements shouldn't be lists");
+                items[size++] = transaction.getBytesOrNull();
             }
-
-            this.nonce = transaction.get(0).getRLPData();
-            this.gasPrice = transaction.get(1).getRLPData();
-            this.gasLimit = transaction.get(2).getRLPData();
-            this.receiveAddress = transaction.get(3).getRLPData();
-            this.value = transaction.get(4).getRLPData();
-            this.data = transaction.get(5).getRLPData();
+            if (size < 7) throw new RuntimeException("Too few RLP elements");
+
+            this.nonce = items[0];
+            this.gasPrice = items[1];
+            this.gasLimit = items[2];
+            this.receiveAddress = items[3];
+            this.value = items[4];
+            this.data = items[5];
             // only parse signature in case tx is signed
-            if (transaction.get(6).getRLPData() != null) {
-                byte[] vData =  transaction.get(6).getRLPData();
+            if (items[6] != null) {
+                if (size < 9) throw new RuntimeException("Too few RLP elements");
+                byte[] vData = items[6];
                 BigInteger v = ByteUtil.bytesToBigInteger(vData);
-                byte[] r = transaction.get(7).getRLPData();
-                byte[] s = transaction.get(8).getRLPData();
+                byte[] r = items[7];
+                byte[] s = items[8];
                 this.chainId = extractChainIdFromRawSignature(v, r, s);
                 if (r != null && s != null) {
                     this.signature = ECDSASignature.fromComponents(r, s, getRealV(v));
@@ -447,54 +451,38 @@ public class Transaction {
     public byte[] getEncodedRaw() {
 
         rlpParse();
-        byte[] rlpRaw;
+        RLPWriter writer = encodeFields();
 
-        // parse null as 0 for nonce
-        byte[] nonce = null;
-        if (this.nonce == null || this.nonce.length == 1 && this.nonce[0] == 0) {
-            nonce = RLP.encodeElement(null);
-        } else {
-            nonce = RLP.encodeElement(this.nonce);
+        // Since EIP-155 use chainId for v
+        if (chainId != null) {
+            writer.writeLong(chainId)
+                    .writeBytes(EMPTY_BYTE_ARRAY)
+                    .writeBytes(EMPTY_BYTE_ARRAY);
         }
-        byte[] gasPrice = RLP.encodeElement(this.gasPrice);
-        byte[] gasLimit = RLP.encodeElement(this.gasLimit);
-        byte[] receiveAddress = RLP.encodeElement(this.receiveAddress);
-        byte[] value = RLP.encodeElement(this.value);
-        byte[] data = RLP.encodeElement(this.data);
+        return writer.endList().toByteArray();
+    }
 
-        // Since EIP-155 use chainId for v
-        if (chainId == null) {
-            rlpRaw = RLP.encodeList(nonce, gasPrice, gasLimit, receiveAddress,
-                    value, data);
+    // opens the transaction list and writes all fields but the signature
+    private RLPWriter encodeFields() {
+        RLPWriter writer = new RLPWriter(128 + (data == null ? 0 : data.length)).startList();
+        // parse null as 0 for nonce
+        if (this.nonce == null || this.nonce.length == 1 && this.nonce[0] == 0) {
+            writer.writeBytes(null);
         } else {
-            byte[] v, r, s;
-            v = RLP.encodeInt(chainId);
-            r = RLP.encodeElement(EMPTY_BYTE_ARRAY);
-            s = RLP.encodeElement(EMPTY_BYTE_ARRAY);
-            rlpRaw = RLP.encodeList(nonce, gasPrice, gasLimit, receiveAddress,
-                    value, data, v, r, s);
+            writer.writeBytes(this.nonce);
         }
-        return rlpRaw;
+        return writer.writeBytes(gasPrice)
+                .writeBytes(gasLimit)
+                .writeBytes(receiveAddress)
+                .writeBytes(value)
+                .writeBytes(data);
     }
 
     public byte[] getEncoded() {
 
         if (rlpEncoded != null) return rlpEncoded;
 
-        // parse null as 0 for nonce
-        byte[] nonce = null;
-        if (this.nonce == null || this.nonce.length == 1 && this.nonce[0] == 0) {
-            nonce = RLP.encodeElement(null);
-        } else {
-            nonce = RLP.encodeElement(this.nonce);
-        }
-        byte[] gasPrice = RLP.encodeElement(this.gasPrice);
-        byte[] gasLimit = RLP.encodeElement(this.gasLimit);
-        byte[] receiveAddress = RLP.encodeElement(this.receiveAddress);
-        byte[] value = RLP.encodeElement(this.value);
-        byte[] data = RLP.encodeElement(this.data);
-
-        byte[] v, r, s;
+        RLPWriter writer = encodeFields();
 
         if (signature != null) {
             int encodeV;
@@ -504,18 +492,21 @@ public class Transaction {
                 encodeV = signature.v - LOWER_REAL_V;
                 encodeV += chainId * 2 + CHAIN_ID_INC;
             }
-            v = RLP.encodeInt(encodeV);
-            r = RLP.encodeElement(BigIntegers.asUnsignedByteArray(signature.r));
-            s = RLP.encodeElement(BigIntegers.asUnsignedByteArray(signature.s));
+            writer.writeLong(encodeV)
+                    .writeBytes(BigIntegers.asUnsignedByteArray(signature.r))
+                    .writeBytes(BigIntegers.asUnsignedByteArray(signature.s));
         } else {
             // Since EIP-155 use chainId for v
-            v = chainId == null ? RLP.encodeElement(EMPTY_BYTE_ARRAY) : RLP.encodeInt(chainId);
-            r = RLP.encodeElement(EMPTY_BYTE_ARRAY);
-            s = RLP.encodeElement(EMPTY_BYTE_ARRAY);
+            if (chainId == null) {
+                writer.writeBytes(EMPTY_BYTE_ARRAY);
+            } else {
+                writer.writeLong(chainId);
+            }
+            writer.writeBytes(EMPTY_BYTE_ARRAY)
+                    .writeBytes(EMPTY_BYTE_ARRAY);
         }
 
-        this.rlpEncoded = RLP.encodeList(nonce, gasPrice, gasLimit,
-                receiveAddress, value, data, v, r, s);
+        this.rlpEncoded = writer.endList().toByteArray();
 
         this.hash = HashUtil.sha3(rlpEncoded);
 
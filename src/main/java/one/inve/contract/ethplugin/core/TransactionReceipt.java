@@ -30,7 +30,6 @@ import java.util.List;
 import static one.inve.contract.ethplugin.datasource.MemSizeEstimator.ByteArrayEstimator;
 import static one.inve.contract.ethplugin.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static one.inve.contract.ethplugin.util.ByteUtil.toHexString;
-import static org.apache.commons.lang3.ArrayUtils.nullToEmpty;
 
 /**
  * The transaction receipt is a tuple of three items
@@ -46,6 +45,8 @@ public class TransactionReceipt {
     private byte[] cumulativeGas = EMPTY_BYTE_ARRAY;
     private Bloom bloomFilter = new Bloom();
     private List<LogInfo> logInfoList = new ArrayList<>();
+    // logs of a decoded receipt, parsed on the first access
+    private RLPReader encodedLogs;
 
     private byte[] gasUsed = EMPTY_BYTE_ARRAY;
     private byte[] executionResult = EMPTY_BYTE_ARRAY;
@@ -59,32 +60,20 @@ public class TransactionReceipt {
 
     public TransactionReceipt(byte[] rlp) {
 
-        RLPList params = RLP.decode2(rlp);
-        RLPList receipt = (RLPList) params.get(0);
+        RLPReader receipt = RLPReader.list(rlp);
 
-        RLPItem postTxStateRLP = (RLPItem) receipt.get(0);
-        RLPItem cumulativeGasRLP = (RLPItem) receipt.get(1);
-        RLPItem bloomRLP = (RLPItem) receipt.get(2);
-        RLPList logs = (RLPList) receipt.get(3);
-        RLPItem gasUsedRLP = (RLPItem) receipt.get(4);
-        RLPItem result = (RLPItem) receipt.get(5);
+        postTxState = receipt.nextItem().getBytes();
+        cumulativeGas = receipt.nextItem().getBytesOrNull();
+        bloomFilter = new Bloom(receipt.nextItem().getBytesOrNull());
+        encodedLogs = receipt.next().getList();
+        gasUsed = receipt.nextItem().getBytesOrNull();
+        executionResult = receipt.nextItem().getBytes();
 
-        postTxState = nullToEmpty(postTxStateRLP.getRLPData());
-        cumulativeGas = cumulativeGasRLP.getRLPData();
-        bloomFilter = new Bloom(bloomRLP.getRLPData());
-        gasUsed = gasUsedRLP.getRLPData();
-        executionResult = (executionResult = result.getRLPData()) == null ? EMPTY_BYTE_ARRAY : executionResult;
-
-        if (receipt.size() > 6) {
-            byte[] errBytes = receipt.get(6).getRLPData();
+        if (receipt.hasNext()) {
+            byte[] errBytes = receipt.next().getRLPData();
             error = errBytes != null ? new String(errBytes, StandardCharsets.UTF_8) : "";
         }
 
-        for (RLPElement log : logs) {
-            LogInfo logInfo = new LogInfo(log.getRLPData());
-            logInfoList.add(logInfo);
-        }
-
         rlpEncoded = rlp;
     }
 
@@ -139,6 +128,14 @@ public class TransactionReceipt {
     }
 
     public List<LogInfo> getLogInfoList() {
+        if (encodedLogs != null) {
+            List<LogInfo> logs = new ArrayList<>();
+            while (encodedLogs.hasNext()) {
+                logs.add(new LogInfo(encodedLogs.next().getRLPData()));
+            }
+            logInfoList = logs;
+            encodedLogs = null;
+        }
         return logInfoList;
     }
 
@@ -175,30 +172,24 @@ public class TransactionReceipt {
 
     public byte[] getEncoded(boolean receiptTrie) {
 
-        byte[] postTxStateRLP = RLP.encodeElement(this.postTxState);
-        byte[] cumulativeGasRLP = RLP.encodeElement(this.cumulativeGas);
-        byte[] bloomRLP = RLP.encodeElement(this.bloomFilter.data);
-
-        final byte[] logInfoListRLP;
-        if (logInfoList != null) {
-            byte[][] logInfoListE = new byte[logInfoList.size()][];
-
-            int i = 0;
+        RLPWriter writer = new RLPWriter().startList()
+                .writeBytes(postTxState)
+                .writeBytes(cumulativeGas)
+                .writeBytes(bloomFilter.data)
+                .startList();
+        if (getLogInfoList() != null) {
             for (LogInfo logInfo : logInfoList) {
-                logInfoListE[i] = logInfo.getEncoded();
-                ++i;
+                writer.writeEncoded(logInfo.getEncoded());
             }
-            logInfoListRLP = RLP.encodeList(logInfoListE);
-        } else {
-            logInfoListRLP = RLP.encodeList();
         }
+        writer.endList();
 
-        return receiptTrie ?
-                RLP.encodeList(postTxStateRLP, cumulativeGasRLP, bloomRLP, logInfoListRLP):
-                RLP.encodeList(postTxStateRLP, cumulativeGasRLP, bloomRLP, logInfoListRLP,
-                        RLP.encodeElement(gasUsed), RLP.encodeElement(executionResult),
-                        RLP.encodeElement(error.getBytes(StandardCharsets.UTF_8)));
-
+        if (!receiptTrie) {
+            writer.writeBytes(gasUsed)
+                    .writeBytes(executionResult)
+                    .writeBytes(error.getBytes(StandardCharsets.UTF_8));
+        }
+        return writer.endList().toByteArray();
     }
 
     public void setPostTxState(byte[] postTxState) {
@@ -251,6 +242,7 @@ public class TransactionReceipt {
     public void setLogInfoList(List<LogInfo> logInfoList) {
         if (logInfoList == null) return;
         this.logInfoList = logInfoList;
+        this.encodedLogs = null;
 
         for (LogInfo loginfo : logInfoList) {
             bloomFilter.or(loginfo.getBloom());
@@ -280,7 +272,7 @@ public class TransactionReceipt {
                 "\n  , error=" + error +
                 "\n  , executionResult=" + toHexString(executionResult) +
                 "\n  , bloom=" + bloomFilter.toString() +
-                "\n  , logs=" + logInfoList +
+                "\n  , logs=" + getLogInfoList() +
                 ']';
     }
 
@@ -292,7 +284,7 @@ public class TransactionReceipt {
         if (receipt == null) {
             return 0;
         }
-        long logSize = receipt.logInfoList.stream().mapToLong(LogInfo.MemEstimator::estimateSize).sum() + 16;
+        long logSize = receipt.getLogInfoList().stream().mapToLong(LogInfo.MemEstimator::estimateSize).sum() + 16;
         return (receipt.transaction == null ? 0 : Transaction.MemEstimator.estimateSize(receipt.transaction)) +
                 (receipt.postTxState == EMPTY_BYTE_ARRAY ? 0 : ByteArrayEstimator.estimateSize(receipt.postTxState)) +
                 (receipt.cumulativeGas == EMPTY_BYTE_ARRAY ? 0 : ByteArrayEstimator.estimateSize(receipt.cumulativeGas)) +
@@ -45,6 +45,7 @@ import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.asn1.x9.X9IntegerConverter;
 import org.spongycastle.crypto.agreement.ECDHBasicAgreement;
 import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.ec.CustomNamedCurves;
 import org.spongycastle.crypto.engines.AESEngine;
 import org.spongycastle.crypto.modes.SICBlockCipher;
 import org.spongycastle.crypto.params.*;
@@ -111,6 +112,12 @@ public class ECKey implements Serializable {
      */
     public static final BigInteger HALF_CURVE_ORDER;
 
+    /**
+     * secp256k1 with the field arithmetic on fixed size words and the GLV endomorphism, used for key recovery.
+     * Its generator keeps the wNAF table precomputed by the first recovery
+     */
+    private static final ECDomainParameters RECOVERY_CURVE;
+
     public static final ECKey DUMMY;
 
     private static final SecureRandom secureRandom;
@@ -122,6 +129,9 @@ public class ECKey implements Serializable {
         CURVE = new ECDomainParameters(params.getCurve(), params.getG(), params.getN(), params.getH());
         CURVE_SPEC = new ECParameterSpec(params.getCurve(), params.getG(), params.getN(), params.getH());
         HALF_CURVE_ORDER = params.getN().shiftRight(1);
+        X9ECParameters recoveryParams = CustomNamedCurves.getByName("secp256k1");
+        RECOVERY_CURVE = new ECDomainParameters(recoveryParams.getCurve(), recoveryParams.getG(),
+                recoveryParams.getN(), recoveryParams.getH());
         secureRandom = new SecureRandom();
         DUMMY = fromPrivate(BigInteger.ONE);
     }
@@ -1070,17 +1080,17 @@ public class ECKey implements Serializable {
         //        do another iteration of Step 1.
         //
         // More concisely, what these points mean is to use X as a compressed public key.
-        ECCurve.Fp curve = (ECCurve.Fp) CURVE.getCurve();
-        BigInteger prime = curve.getQ();  // Bouncy Castle is not consistent about the letter it uses for the prime.
+        BigInteger prime = RECOVERY_CURVE.getCurve().getField().getCharacteristic();
         if (x.compareTo(prime) >= 0) {
             // Cannot have point co-ordinates larger than this as everything takes place modulo Q.
             return null;
         }
         // Compressed keys require you to know an extra bit of data about the y-coord as there are two possibilities.
         // So it's encoded in the recId.
-        ECPoint R = decompressKey(x, (recId & 1) == 1);
+        ECPoint R = decompressKey(RECOVERY_CURVE.getCurve(), x, (recId & 1) == 1);
         //   1.4. If nR != point at infinity, then do another iteration of Step 1 (callers responsibility).
-        if (!R.multiply(n).isInfinity())
+        //        The cofactor of secp256k1 is 1, so every point on the curve has order n and the check is skipped
+        if (!RECOVERY_CURVE.getH().equals(BigInteger.ONE) && !R.multiply(n).isInfinity())
             return null;
         //   1.5. Compute e from M using Steps 2 and 3 of ECDSA signature verification.
         BigInteger e = new BigInteger(1, messageHash);
@@ -1099,7 +1109,7 @@ public class ECKey implements Serializable {
         BigInteger rInv = sig.r.modInverse(n);
         BigInteger srInv = rInv.multiply(sig.s).mod(n);
         BigInteger eInvrInv = rInv.multiply(eInv).mod(n);
-        ECPoint.Fp q = (ECPoint.Fp) ECAlgorithms.sumOfTwoMultiplies(CURVE.getG(), eInvrInv, R, srInv);
+        ECPoint q = ECAlgorithms.sumOfTwoMultiplies(RECOVERY_CURVE.getG(), eInvrInv, R, srInv);
         // result sanity check: point must not be at infinity
         if (q.isInfinity())
             return null;
@@ -1148,11 +1158,11 @@ public class ECKey implements Serializable {
      * @param yBit -
      * @return -
      */
-    private static ECPoint decompressKey(BigInteger xBN, boolean yBit) {
+    private static ECPoint decompressKey(ECCurve curve, BigInteger xBN, boolean yBit) {
         X9IntegerConverter x9 = new X9IntegerConverter();
-        byte[] compEnc = x9.integerToBytes(xBN, 1 + x9.getByteLength(CURVE.getCurve()));
+        byte[] compEnc = x9.integerToBytes(xBN, 1 + x9.getByteLength(curve));
         compEnc[0] = (byte) (yBit ? 0x03 : 0x02);
-        return CURVE.getCurve().decodePoint(compEnc);
+        return curve.decodePoint(compEnc);
     }
 
     /**
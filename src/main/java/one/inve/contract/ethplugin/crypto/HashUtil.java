@@ -18,6 +18,7 @@
 package one.inve.contract.ethplugin.crypto;
 
 import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.crypto.cryptohash.FastKeccak256;
 import one.inve.contract.ethplugin.crypto.jce.SpongyCastleProvider;
 import one.inve.contract.ethplugin.util.RLP;
 import one.inve.contract.ethplugin.util.Utils;
@@ -33,6 +34,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
+import java.util.List;
 import java.util.Random;
 
 import static java.util.Arrays.copyOfRange;
@@ -51,12 +53,19 @@ public class HashUtil {
     private static final String HASH_256_ALGORITHM_NAME;
     private static final String HASH_512_ALGORITHM_NAME;
 
+    /**
+     * Keccak-256 of the thread, used instead of the JCA digest when the configured 256-bit hash is Keccak
+     */
+    private static final ThreadLocal<FastKeccak256> KECCAK = ThreadLocal.withInitial(FastKeccak256::new);
+    private static final boolean FAST_KECCAK;
+
     static {
         SystemProperties props = SystemProperties.getDefault();
         Security.addProvider(SpongyCastleProvider.getInstance());
         CRYPTO_PROVIDER = Security.getProvider(props.getCryptoProviderName());
         HASH_256_ALGORITHM_NAME = props.getHash256AlgName();
         HASH_512_ALGORITHM_NAME = props.getHash512AlgName();
+        FAST_KECCAK = "ETH-KECCAK-256".equalsIgnoreCase(HASH_256_ALGORITHM_NAME);
         EMPTY_DATA_HASH = sha3(EMPTY_BYTE_ARRAY);
         EMPTY_LIST_HASH = sha3(RLP.encodeList());
         EMPTY_TRIE_HASH = sha3(RLP.encodeElement(EMPTY_BYTE_ARRAY));
@@ -78,6 +87,9 @@ public class HashUtil {
     }
 
     public static byte[] sha3(byte[] input) {
+        if (FAST_KECCAK) {
+            return keccak().update(input).digest();
+        }
         MessageDigest digest;
         try {
             digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
@@ -91,6 +103,9 @@ public class HashUtil {
     }
 
     public static byte[] sha3(byte[] input1, byte[] input2) {
+        if (FAST_KECCAK) {
+            return keccak().update(input1).update(input2).digest();
+        }
         MessageDigest digest;
         try {
             digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
@@ -115,6 +130,9 @@ public class HashUtil {
      * @return - keccak hash of the chunk
      */
     public static byte[] sha3(byte[] input, int start, int length) {
+        if (FAST_KECCAK) {
+            return keccak().update(input, start, length).digest();
+        }
         MessageDigest digest;
         try {
             digest = MessageDigest.getInstance(HASH_256_ALGORITHM_NAME, CRYPTO_PROVIDER);
@@ -126,6 +144,57 @@ public class HashUtil {
         }
     }
 
+    /**
+     * hashing chunk of the data into the given buffer
+     *
+     * @param out
+     *            - buffer for the 32 bytes of the hash
+     * @param outOffset
+     *            - offset of the hash in the buffer
+     */
+    public static void sha3(byte[] input, int start, int length, byte[] out, int outOffset) {
+        if (FAST_KECCAK) {
+            keccak().update(input, start, length).digest(out, outOffset);
+        } else {
+            byte[] hash = sha3(input, start, length);
+            System.arraycopy(hash, 0, out, outOffset, hash.length);
+        }
+    }
+
+    /**
+     * Hashes each of the inputs, e.g. trie nodes, with the same digest
+     *
+     * @return - keccak hashes in the order of the inputs
+     */
+    public static byte[][] sha3(List<byte[]> inputs) {
+        byte[][] hashes = new byte[inputs.size()][];
+        if (FAST_KECCAK) {
+            FastKeccak256 keccak = keccak();
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = keccak.update(inputs.get(i)).digest();
+            }
+        } else {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = sha3(inputs.get(i));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Keccak-256 digest of the current thread for hashing data which is not in a single array, it is reset
+     * when the hash is taken. The other sha3 methods use the same digest, so they must not be called before
+     * the hash is taken. Only valid if the configured 256-bit hash is Keccak-256, which it is by default
+     */
+    public static FastKeccak256 keccak() {
+        if (!FAST_KECCAK) {
+            throw new IllegalStateException("256-bit hash is configured to " + HASH_256_ALGORITHM_NAME);
+        }
+        FastKeccak256 keccak = KECCAK.get();
+        keccak.reset();
+        return keccak;
+    }
+
     public static byte[] sha512(byte[] input) {
         MessageDigest digest;
         try {
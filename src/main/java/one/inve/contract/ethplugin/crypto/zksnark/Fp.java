@@ -18,42 +18,151 @@
 package one.inve.contract.ethplugin.crypto.zksnark;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
-import static one.inve.contract.ethplugin.crypto.zksnark.Params.P;
+import static one.inve.contract.ethplugin.crypto.zksnark.Params.*;
 
 /**
- * Arithmetic in F_p, p = 21888242871839275222246405745257275088696311157297823662689037894645226208583
+ * Arithmetic in F_p, p = 21888242871839275222246405745257275088696311157297823662689037894645226208583 <br/>
+ * <br/>
+ *
+ * Elements are kept in Montgomery form {@code v * 2^256 mod p} as four 64-bit limbs, least significant first.
+ * Multiplication is done on 32-bit words with a separate Montgomery reduction, so {@link Fp2} can sum
+ * double width products and reduce them once (lazy reduction). Values are converted from and to
+ * {@link BigInteger} only when elements are created, encoded or inverted. Intermediate words live in
+ * per thread {@link Scratch} arrays, so an operation allocates nothing but its result.
  *
  * @author Mikhail Kalinin
  * @since 01.09.2017
  */
 public class Fp implements Field<Fp> {
 
+    private static final long MASK = 0xFFFFFFFFL;
+    // 512-bit product and a word for the carry of the reduction
+    static final int PRODUCT_WORDS = 17;
+
+    /**
+     * Working arrays of the calling thread; an array is only used within a single operation
+     */
+    static final class Scratch {
+        final long[] x = new long[8];
+        final long[] y = new long[8];
+        final long[] t = new long[PRODUCT_WORDS];
+        final long[] u = new long[PRODUCT_WORDS];
+        final long[] v = new long[PRODUCT_WORDS];
+
+        private static final ThreadLocal<Scratch> LOCAL = ThreadLocal.withInitial(Scratch::new);
+
+        static Scratch get() {
+            return LOCAL.get();
+        }
+    }
+
     static final Fp ZERO = new Fp(BigInteger.ZERO);
     static final Fp _1 = new Fp(BigInteger.ONE);
     static final Fp NON_RESIDUE = new Fp(new BigInteger("21888242871839275222246405745257275088696311157297823662689037894645226208582"));
 
     static final Fp _2_INV = new Fp(BigInteger.valueOf(2).modInverse(P));
 
-    BigInteger v;
+    // Montgomery form of v mod p
+    final long l0, l1, l2, l3;
+    // false if the value the element has been created from is not less than p
+    private final boolean valid;
+
+    Fp(BigInteger v) {
+        this(montgomery(v), v.compareTo(P) < 0);
+    }
+
+    private Fp(long[] limbs, boolean valid) {
+        this(limbs[0], limbs[1], limbs[2], limbs[3], valid);
+    }
+
+    private Fp(long l0, long l1, long l2, long l3, boolean valid) {
+        this.l0 = l0;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.l3 = l3;
+        this.valid = valid;
+    }
+
+    @Override
+    public Fp add(Fp o) {
+        long[] s = Scratch.get().x;
+        sumWords(o, s);
+        return reduced(s, 0);
+    }
+
+    @Override
+    public Fp sub(Fp o) {
+        Scratch s = Scratch.get();
+        long[] d = words(s.x);
+        long[] w = o.words(s.y);
+        long borrow = 0;
+        for (int i = 0; i < 8; i++) {
+            long x = d[i] - w[i] - borrow;
+            d[i] = x & MASK;
+            borrow = x >>> 63;
+        }
+        if (borrow != 0) {
+            long c = 0;
+            for (int i = 0; i < 8; i++) {
+                c += d[i] + P_WORDS[i];
+                d[i] = c & MASK;
+                c >>>= 32;
+            }
+        }
+        return fromWords(d);
+    }
+
+    @Override
+    public Fp mul(Fp o) {
+        Scratch s = Scratch.get();
+        return reduce(product(words(s.x), o.words(s.y), s.t));
+    }
 
-    Fp(BigInteger v) { this.v = v; }
+    @Override
+    public Fp squared() {
+        Scratch s = Scratch.get();
+        long[] w = words(s.x);
+        return reduce(product(w, w, s.t));
+    }
 
-    @Override public Fp add(Fp o) { return new Fp(this.v.add(o.v).mod(P)); }
-    @Override public Fp mul(Fp o) { return new Fp(this.v.multiply(o.v).mod(P)); }
-    @Override public Fp sub(Fp o) { return new Fp(this.v.subtract(o.v).mod(P)); }
-    @Override public Fp squared() { return new Fp(v.multiply(v).mod(P)); }
-    @Override public Fp dbl() { return new Fp(v.add(v).mod(P)); }
-    @Override public Fp inverse() { return new Fp(v.modInverse(P)); }
-    @Override public Fp negate() { return new Fp(v.negate().mod(P)); }
-    @Override public boolean isZero() { return v.compareTo(BigInteger.ZERO) == 0; }
+    @Override
+    public Fp dbl() {
+        return add(this);
+    }
+
+    @Override
+    public Fp inverse() {
+        return new Fp(toBigInteger().modInverse(P));
+    }
+
+    @Override
+    public Fp negate() {
+        // also covers p and other multiples, p - 0 would not be reduced
+        if ((l0 | l1 | l2 | l3) == 0) return isZero() ? this : ZERO;
+
+        long[] d = words(Scratch.get().x);
+        long borrow = 0;
+        for (int i = 0; i < 8; i++) {
+            long x = P_WORDS[i] - d[i] - borrow;
+            d[i] = x & MASK;
+            borrow = x >>> 63;
+        }
+        return fromWords(d);
+    }
+
+    @Override
+    public boolean isZero() {
+        return valid && (l0 | l1 | l2 | l3) == 0;
+    }
 
     /**
      * Checks if provided value is a valid Fp member
      */
     @Override
     public boolean isValid() {
-        return v.compareTo(P) < 0;
+        return valid;
     }
 
     Fp2 mul(Fp2 o) { return new Fp2(o.a.mul(this), o.b.mul(this)); }
@@ -67,7 +176,162 @@ public class Fp implements Field<Fp> {
     }
 
     public byte[] bytes() {
-        return v.toByteArray();
+        return toBigInteger().toByteArray();
+    }
+
+    BigInteger toBigInteger() {
+        long[] t = new long[PRODUCT_WORDS];
+        words(t);
+        Fp v = reduce(t);
+        byte[] bytes = new byte[32];
+        long[] limbs = {v.l3, v.l2, v.l1, v.l0};
+        for (int i = 0; i < 32; i++) {
+            bytes[i] = (byte) (limbs[i >> 3] >>> (56 - 8 * (i & 7)));
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Writes 32-bit words of the Montgomery form, least significant first, to the first 8 words of w
+     *
+     * @return w
+     */
+    long[] words(long[] w) {
+        w[0] = l0 & MASK; w[1] = l0 >>> 32;
+        w[2] = l1 & MASK; w[3] = l1 >>> 32;
+        w[4] = l2 & MASK; w[5] = l2 >>> 32;
+        w[6] = l3 & MASK; w[7] = l3 >>> 32;
+        return w;
+    }
+
+    /**
+     * Writes words of the sum which is not reduced, it is less than 2p and still fits in 8 words
+     *
+     * @return s
+     */
+    long[] sumWords(Fp o, long[] s) {
+        long c = 0;
+        c += (l0 & MASK) + (o.l0 & MASK); s[0] = c & MASK; c >>>= 32;
+        c += (l0 >>> 32) + (o.l0 >>> 32); s[1] = c & MASK; c >>>= 32;
+        c += (l1 & MASK) + (o.l1 & MASK); s[2] = c & MASK; c >>>= 32;
+        c += (l1 >>> 32) + (o.l1 >>> 32); s[3] = c & MASK; c >>>= 32;
+        c += (l2 & MASK) + (o.l2 & MASK); s[4] = c & MASK; c >>>= 32;
+        c += (l2 >>> 32) + (o.l2 >>> 32); s[5] = c & MASK; c >>>= 32;
+        c += (l3 & MASK) + (o.l3 & MASK); s[6] = c & MASK; c >>>= 32;
+        c += (l3 >>> 32) + (o.l3 >>> 32); s[7] = c & MASK;
+        return s;
+    }
+
+    /**
+     * Writes double width product of two 8 word numbers with an extra zero word for {@link #reduce(long[])}
+     * to t, a and b must not be t
+     *
+     * @return t
+     */
+    static long[] product(long[] a, long[] b, long[] t) {
+        Arrays.fill(t, 0);
+        for (int i = 0; i < 8; i++) {
+            long ai = a[i];
+            long c = 0;
+            for (int j = 0; j < 8; j++) {
+                // at most (2^32 - 1)^2 + 2 * (2^32 - 1) = 2^64 - 1
+                long s = t[i + j] + ai * b[j] + c;
+                // unsigned carry
+                t[i + j] = s & MASK;
+                c = s >>> 32;
+            }
+            t[i + 8] = c;
+        }
+        return t;
+    }
+
+    /**
+     * Adds a double width number to the product in place
+     */
+    static void addProduct(long[] t, long[] o) {
+        long c = 0;
+        for (int i = 0; i < t.length; i++) {
+            c += t[i] + o[i];
+            t[i] = c & MASK;
+            c >>>= 32;
+        }
+    }
+
+    /**
+     * Subtracts a double width number from the product in place, the difference must not be negative
+     */
+    static void subProduct(long[] t, long[] o) {
+        long borrow = 0;
+        for (int i = 0; i < t.length; i++) {
+            long x = t[i] - o[i] - borrow;
+            t[i] = x & MASK;
+            borrow = x >>> 63;
+        }
+    }
+
+    /**
+     * Montgomery reduction of a double width number t < p * 2^256, i.e. {@code t * 2^-256 mod p}.
+     * The words of t are overwritten
+     */
+    static Fp reduce(long[] t) {
+        for (int i = 0; i < 8; i++) {
+            long m = (t[i] * P_INV) & MASK;
+            long c = 0;
+            for (int j = 0; j < 8; j++) {
+                long s = t[i + j] + m * P_WORDS[j] + c;
+                t[i + j] = s & MASK;
+                c = s >>> 32;
+            }
+            for (int k = i + 8; c != 0; k++) {
+                c += t[k];
+                t[k] = c & MASK;
+                c >>>= 32;
+            }
+        }
+        // the result is less than 2p
+        return reduced(t, 8);
+    }
+
+    // subtracts p once if the number of 8 words starting at off is not less than p
+    private static Fp reduced(long[] w, int off) {
+        if (!lessThanP(w, off)) {
+            long borrow = 0;
+            for (int i = 0; i < 8; i++) {
+                long x = w[off + i] - P_WORDS[i] - borrow;
+                w[off + i] = x & MASK;
+                borrow = x >>> 63;
+            }
+        }
+        return fromWords(w, off);
+    }
+
+    private static boolean lessThanP(long[] w, int off) {
+        for (int i = 7; i >= 0; i--) {
+            if (w[off + i] != P_WORDS[i]) return w[off + i] < P_WORDS[i];
+        }
+        return false;
+    }
+
+    private static Fp fromWords(long[] w) {
+        return fromWords(w, 0);
+    }
+
+    private static Fp fromWords(long[] w, int off) {
+        return new Fp(w[off] | (w[off + 1] << 32), w[off + 2] | (w[off + 3] << 32),
+                w[off + 4] | (w[off + 5] << 32), w[off + 6] | (w[off + 7] << 32), true);
+    }
+
+    private static long[] montgomery(BigInteger v) {
+        BigInteger m = v.mod(P).shiftLeft(256).mod(P);
+        return new long[] {m.longValue(), m.shiftRight(64).longValue(), m.shiftRight(128).longValue(), m.shiftRight(192).longValue()};
+    }
+
+    static long[] words(BigInteger v, int size) {
+        long[] w = new long[size];
+        for (int i = 0; i < size; i++) {
+            w[i] = v.shiftRight(32 * i).longValue() & MASK;
+        }
+        return w;
     }
 
     @Override
@@ -77,11 +341,11 @@ public class Fp implements Field<Fp> {
 
         Fp fp = (Fp) o;
 
-        return !(v != null ? v.compareTo(fp.v) != 0 : fp.v != null);
+        return valid == fp.valid && l0 == fp.l0 && l1 == fp.l1 && l2 == fp.l2 && l3 == fp.l3;
     }
 
     @Override
     public String toString() {
-        return v.toString();
+        return toBigInteger().toString();
     }
 }
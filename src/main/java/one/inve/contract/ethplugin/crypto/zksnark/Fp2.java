@@ -58,13 +58,10 @@ class Fp2 implements Field<Fp2> {
     @Override
     public Fp2 squared() {
 
-        // using Complex squaring
+        // using Complex squaring, NON_RESIDUE of F_p is -1
 
-        Fp ab = a.mul(b);
-
-        Fp ra = a.add(b).mul(b.mul(Fp.NON_RESIDUE).add(a))
-                .sub(ab).sub(ab.mul(Fp.NON_RESIDUE)); // ra = (a + b)(a + NON_RESIDUE * b) - ab - NON_RESIDUE * b
-        Fp rb = ab.dbl();
+        Fp ra = a.add(b).mul(a.sub(b));     // ra = (a + b)(a - b) = a^2 - b^2
+        Fp rb = a.mul(b).dbl();             // rb = 2ab
 
         return new Fp2(ra, rb);
     }
@@ -72,13 +69,23 @@ class Fp2 implements Field<Fp2> {
     @Override
     public Fp2 mul(Fp2 o) {
 
-        Fp aa = a.mul(o.a);
-        Fp bb = b.mul(o.b);
+        // Karatsuba on double width products which are reduced once per coefficient
 
-        Fp ra = bb.mul(Fp.NON_RESIDUE).add(aa);    // ra = a1 * a2 + NON_RESIDUE * b1 * b2
-        Fp rb = a.add(b).mul(o.a.add(o.b)).sub(aa).sub(bb);     // rb = (a1 + b1)(a2 + b2) - a1 * a2 - b1 * b2
+        Fp.Scratch s = Fp.Scratch.get();
 
-        return new Fp2(ra, rb);
+        long[] aa = Fp.product(a.words(s.x), o.a.words(s.y), s.t);
+        long[] bb = Fp.product(b.words(s.x), o.b.words(s.y), s.u);
+        long[] rb = Fp.product(a.sumWords(b, s.x), o.a.sumWords(o.b, s.y), s.v);
+
+        // rb = (a1 + b1)(a2 + b2) - a1 * a2 - b1 * b2 = a1 * b2 + b1 * a2
+        Fp.subProduct(rb, aa);
+        Fp.subProduct(rb, bb);
+
+        // ra = a1 * a2 + NON_RESIDUE * b1 * b2 = a1 * a2 + p^2 - b1 * b2
+        Fp.addProduct(aa, Params.P_SQUARED);
+        Fp.subProduct(aa, bb);
+
+        return new Fp2(Fp.reduce(aa), Fp.reduce(rb));
     }
 
     @Override
@@ -101,7 +108,7 @@ class Fp2 implements Field<Fp2> {
 
         Fp t0 = a.squared();
         Fp t1 = b.squared();
-        Fp t2 = t0.sub(Fp.NON_RESIDUE.mul(t1));
+        Fp t2 = t0.add(t1);         // t2 = t0 - NON_RESIDUE * t1
         Fp t3 = t2.inverse();
 
         Fp ra = a.mul(t3);          // ra = a * t3
@@ -162,7 +169,13 @@ class Fp2 implements Field<Fp2> {
     }
 
     Fp2 mulByNonResidue() {
-        return NON_RESIDUE.mul(this);
+
+        // (9 + i)(a + bi) = (9a - b) + (a + 9b)i
+
+        Fp ra = a.dbl().dbl().dbl().add(a).sub(b);
+        Fp rb = b.dbl().dbl().dbl().add(b).add(a);
+
+        return new Fp2(ra, rb);
     }
 
     @Override
@@ -32,6 +32,14 @@ class Params {
      */
     static final BigInteger P = new BigInteger("21888242871839275222246405745257275088696311157297823662689037894645226208583");
 
+    /**
+     * Constants of the Montgomery arithmetic in {@link Fp}, set before any element is created:
+     * "p" in 32-bit words, -p^-1 mod 2^32 and p^2 as a double width product
+     */
+    static final long[] P_WORDS = Fp.words(P, 8);
+    static final long P_INV = BigInteger.ONE.shiftLeft(32).subtract(P.modInverse(BigInteger.ONE.shiftLeft(32))).longValue();
+    static final long[] P_SQUARED = Fp.words(P.multiply(P), Fp.PRODUCT_WORDS);
+
     /**
      * "r" order of {@link BN128G2} cyclic subgroup
      */
@@ -0,0 +1,366 @@
+package one.inve.contract.ethplugin.datasource;
+
+import one.inve.contract.ethplugin.db.ByteArrayWrapper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory bounded read-through cache with Adaptive Replacement Cache (ARC) eviction.
+ *
+ * Entries read once are kept in the 'recent' list, entries read again are promoted to the 'frequent' list.
+ * Keys of evicted entries are remembered in two ghost lists and a miss on a ghost key shifts the target size of
+ * the recent list towards the list the key was evicted from. Thus a burst of new keys, e.g. the nodes written by a
+ * commit or a one-off scan, can't flush the frequently read entries out. Sizes are measured in bytes with the
+ * {@link MemSizeEstimator}s of key and value plus a fixed per-entry overhead.
+ *
+ * Writes go to the underlying source and update the cache, so the entries are never stale as long as every write
+ * to the source passes through the cache. A batch update is forwarded as a single batch when the source supports
+ * it, and the written values enter the cache as recent entries.
+ *
+ * The lists are guarded by the cache monitor, a miss reads the source outside of it so concurrent readers, e.g.
+ * the storage tries hashed in parallel, don't wait for each other's disk reads. A value read by a miss is only
+ * admitted if no write has passed the cache meanwhile, otherwise it could be older than the written one.
+ *
+ * With {@link #withOffHeapStorage()} the values are kept in a {@link SlabAllocator} outside of the Java heap and
+ * only keys and handles stay on the heap; values larger than a slab slot are still kept on the heap. When the
+ * slabs have no slot for a value, entries are evicted as if the cache was full until it fits.
+ */
+public class AdaptiveReadCache extends AbstractChainedSource<byte[], byte[], byte[], byte[]>
+        implements CachedSource.BytesKey<byte[]>, BatchSource<byte[], byte[]> {
+
+    // two map entries, the key wrapper and the size box
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long capacity;
+    private final MemSizeEstimator<byte[]> keySizeEstimator;
+    private final MemSizeEstimator<byte[]> valueSizeEstimator;
+
+    // all lists are in LRU order, the eldest entry first
+    // values are either byte[] or Long handles of the off-heap storage
+    private final LinkedHashMap<ByteArrayWrapper, Object> recent = new LinkedHashMap<>();
+    private final LinkedHashMap<ByteArrayWrapper, Object> frequent = new LinkedHashMap<>();
+    private final LinkedHashMap<ByteArrayWrapper, Long> recentGhost = new LinkedHashMap<>();
+    private final LinkedHashMap<ByteArrayWrapper, Long> frequentGhost = new LinkedHashMap<>();
+    private long recentSize, frequentSize, recentGhostSize, frequentGhostSize;
+    // target size of the recent list
+    private long target;
+
+    private long hitCount, missCount, evictionCount;
+    // number of writes which have passed the cache, a miss admits its value only if it hasn't changed
+    private long writeCount;
+
+    private SlabAllocator slabs;
+
+    public AdaptiveReadCache(Source<byte[], byte[]> source, long capacity) {
+        this(source, capacity, MemSizeEstimator.ByteArrayEstimator, MemSizeEstimator.ByteArrayEstimator);
+    }
+
+    public AdaptiveReadCache(Source<byte[], byte[]> source, long capacity,
+                             MemSizeEstimator<byte[]> keySizeEstimator, MemSizeEstimator<byte[]> valueSizeEstimator) {
+        super(source);
+        this.capacity = capacity;
+        this.keySizeEstimator = keySizeEstimator;
+        this.valueSizeEstimator = valueSizeEstimator;
+    }
+
+    /**
+     * Keeps the cached values in direct memory, the capacity then limits the off-heap memory
+     */
+    public synchronized AdaptiveReadCache withOffHeapStorage() {
+        clear();
+        // slots are rounded up to a power of two, besides every size class may hold a partially used slab
+        slabs = new SlabAllocator(2 * capacity + 8L * SlabAllocator.SLAB_SIZE);
+        return this;
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        ByteArrayWrapper k = new ByteArrayWrapper(key);
+        long writes;
+        synchronized (this) {
+            Object ref = recent.remove(k);
+            if (ref != null) {
+                long size = entrySize(key, ref);
+                recentSize -= size;
+                frequent.put(k, ref);
+                frequentSize += size;
+                hitCount++;
+                return load(ref);
+            }
+            ref = frequent.remove(k);
+            if (ref != null) {
+                frequent.put(k, ref);
+                hitCount++;
+                return load(ref);
+            }
+            missCount++;
+            writes = writeCount;
+        }
+
+        byte[] ret = getSource().get(key);
+        if (ret != null) {
+            synchronized (this) {
+                // another miss may have admitted the key meanwhile
+                if (writes == writeCount && !recent.containsKey(k) && !frequent.containsKey(k)) {
+                    admit(k, ret);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized void put(byte[] key, byte[] val) {
+        if (val == null) {
+            delete(key);
+            return;
+        }
+        getSource().put(key, val);
+        writeCount++;
+        cached(new ByteArrayWrapper(key), val);
+    }
+
+    @Override
+    public synchronized void delete(byte[] key) {
+        getSource().delete(key);
+        writeCount++;
+        invalidate(new ByteArrayWrapper(key));
+    }
+
+    @Override
+    public synchronized void updateBatch(Map<byte[], byte[]> rows) {
+        if (getSource() instanceof BatchSource) {
+            ((BatchSource<byte[], byte[]>) getSource()).updateBatch(rows);
+        } else {
+            for (Map.Entry<byte[], byte[]> row : rows.entrySet()) {
+                if (row.getValue() == null) {
+                    getSource().delete(row.getKey());
+                } else {
+                    getSource().put(row.getKey(), row.getValue());
+                }
+            }
+        }
+        writeCount++;
+
+        for (Map.Entry<byte[], byte[]> row : rows.entrySet()) {
+            ByteArrayWrapper k = new ByteArrayWrapper(row.getKey());
+            if (row.getValue() == null) {
+                invalidate(k);
+            } else {
+                cached(k, row.getValue());
+            }
+        }
+    }
+
+    // stores the written value, an entry which is cached already keeps its list
+    private void cached(ByteArrayWrapper k, byte[] val) {
+        LinkedHashMap<ByteArrayWrapper, Object> list = recent.containsKey(k) ? recent :
+                frequent.containsKey(k) ? frequent : null;
+        if (list == null) {
+            admit(k, val);
+            return;
+        }
+
+        // the old value is released first, making room for the new one
+        boolean inRecent = list == recent;
+        invalidate(k);
+        Object ref = store(val);
+        if (ref == null) return;
+        long size = entrySize(k.getData(), ref);
+        if (inRecent) {
+            recent.put(k, ref);
+            recentSize += size;
+        } else {
+            frequent.put(k, ref);
+            frequentSize += size;
+        }
+        evict(false);
+    }
+
+    private void invalidate(ByteArrayWrapper k) {
+        Object old = recent.remove(k);
+        if (old != null) {
+            recentSize -= entrySize(k.getData(), old);
+            release(old);
+        }
+        old = frequent.remove(k);
+        if (old != null) {
+            frequentSize -= entrySize(k.getData(), old);
+            release(old);
+        }
+    }
+
+    // adds a value which is not cached yet
+    private void admit(ByteArrayWrapper k, byte[] val) {
+        if (entrySize(k.getData(), val) > capacity) return;
+        Object ref = store(val);
+        if (ref == null) return;
+        long size = entrySize(k.getData(), ref);
+
+        Long ghost = recentGhost.remove(k);
+        if (ghost != null) {
+            // evicted from the recent list too early, let it grow
+            recentGhostSize -= ghost;
+            target = Math.min(capacity, target + Math.max(size, size * frequentGhostSize / Math.max(1, recentGhostSize)));
+            frequent.put(k, ref);
+            frequentSize += size;
+            evict(false);
+            return;
+        }
+        ghost = frequentGhost.remove(k);
+        if (ghost != null) {
+            // evicted from the frequent list too early, let it grow
+            frequentGhostSize -= ghost;
+            target = Math.max(0, target - Math.max(size, size * recentGhostSize / Math.max(1, frequentGhostSize)));
+            frequent.put(k, ref);
+            frequentSize += size;
+            evict(true);
+            return;
+        }
+
+        recent.put(k, ref);
+        recentSize += size;
+        evict(false);
+    }
+
+    // brings the cache within its capacity and trims the ghost lists
+    private void evict(boolean frequentGhostHit) {
+        while (recentSize + frequentSize > capacity) {
+            evictOne(frequentGhostHit);
+        }
+        while (recentSize + recentGhostSize > capacity && !recentGhost.isEmpty()) {
+            recentGhostSize -= removeEldest(recentGhost);
+        }
+        while (recentSize + frequentSize + recentGhostSize + frequentGhostSize > 2 * capacity
+                && !frequentGhost.isEmpty()) {
+            frequentGhostSize -= removeEldest(frequentGhost);
+        }
+    }
+
+    // evicts the eldest entry of the list which exceeds its target, the cache must not be empty
+    private void evictOne(boolean frequentGhostHit) {
+        if (recentSize > 0 && (recentSize > target || (frequentGhostHit && recentSize == target)
+                || frequentSize == 0)) {
+            recentGhostSize += evictEldest(recent, recentGhost);
+        } else {
+            frequentGhostSize += evictEldest(frequent, frequentGhost);
+        }
+    }
+
+    private long evictEldest(LinkedHashMap<ByteArrayWrapper, Object> list, LinkedHashMap<ByteArrayWrapper, Long> ghost) {
+        Iterator<Map.Entry<ByteArrayWrapper, Object>> it = list.entrySet().iterator();
+        Map.Entry<ByteArrayWrapper, Object> eldest = it.next();
+        it.remove();
+        long size = entrySize(eldest.getKey().getData(), eldest.getValue());
+        release(eldest.getValue());
+        if (list == recent) {
+            recentSize -= size;
+        } else {
+            frequentSize -= size;
+        }
+        ghost.put(eldest.getKey(), size);
+        evictionCount++;
+        return size;
+    }
+
+    private static long removeEldest(LinkedHashMap<ByteArrayWrapper, Long> ghost) {
+        Iterator<Map.Entry<ByteArrayWrapper, Long>> it = ghost.entrySet().iterator();
+        long size = it.next().getValue();
+        it.remove();
+        return size;
+    }
+
+    private long entrySize(byte[] key, byte[] value) {
+        return keySizeEstimator.estimateSize(key) + valueSizeEstimator.estimateSize(value) + ENTRY_OVERHEAD;
+    }
+
+    private long entrySize(byte[] key, Object ref) {
+        if (ref instanceof byte[]) return entrySize(key, (byte[]) ref);
+        // an off-heap value takes its whole slot
+        return keySizeEstimator.estimateSize(key) + SlabAllocator.slotSize(SlabAllocator.length((Long) ref))
+                + ENTRY_OVERHEAD;
+    }
+
+    // null if the off-heap storage has no room even with the cache emptied
+    private Object store(byte[] val) {
+        if (slabs == null || val.length > SlabAllocator.MAX_SLOT) return val;
+        long handle = slabs.allocate(val);
+        // the memory limit is taken by slabs of other size classes, evicted entries free slots or whole slabs
+        while (handle < 0 && (!recent.isEmpty() || !frequent.isEmpty())) {
+            evictOne(false);
+            handle = slabs.allocate(val);
+        }
+        return handle < 0 ? null : handle;
+    }
+
+    private byte[] load(Object ref) {
+        return ref instanceof byte[] ? (byte[]) ref : slabs.read((Long) ref);
+    }
+
+    private void release(Object ref) {
+        if (ref instanceof Long) slabs.free((Long) ref);
+    }
+
+    @Override
+    protected boolean flushImpl() {
+        return false;
+    }
+
+    @Override
+    public Collection<byte[]> getModified() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean hasModified() {
+        return false;
+    }
+
+    @Override
+    public synchronized long estimateCacheSize() {
+        return recentSize + frequentSize;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return direct memory taken by the off-heap storage, 0 if the values are kept on the heap
+     */
+    public synchronized long getOffHeapBytes() {
+        return slabs == null ? 0 : slabs.getAllocatedBytes();
+    }
+
+    public synchronized int getEntryCount() {
+        return recent.size() + frequent.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Drops all cached entries and ghost keys, the counters are kept
+     */
+    public synchronized void clear() {
+        if (slabs != null) slabs.clear();
+        recent.clear();
+        frequent.clear();
+        recentGhost.clear();
+        frequentGhost.clear();
+        recentSize = frequentSize = recentGhostSize = frequentGhostSize = target = 0;
+    }
+}
@@ -27,10 +27,18 @@ import java.util.Map;
  */
 public class BatchSourceWriter<Key, Value> extends AbstractChainedSource<Key, Value, Key, Value> {
 
-    Map<Key, Value> buf = new HashMap<>();
+    Map<Key, Value> buf;
 
     public BatchSourceWriter(BatchSource<Key, Value> src) {
+        this(src, new HashMap<>());
+    }
+
+    /**
+     * @param buf map of the pending writes, must compare byte[] keys by content for reads to see them
+     */
+    public BatchSourceWriter(BatchSource<Key, Value> src, Map<Key, Value> buf) {
         super(src);
+        this.buf = buf;
     }
 
     private BatchSource<Key, Value> getBatchSource() {
@@ -47,8 +55,15 @@ public class BatchSourceWriter<Key, Value> extends AbstractChainedSource<Key, Va
         buf.put(key, val);
     }
 
+    /**
+     * Reads the pending write of the key first, a write which failed to flush is still pending
+     */
     @Override
     public Value get(Key key) {
+        synchronized (this) {
+            // null value means the key is deleted
+            if (buf.containsKey(key)) return buf.get(key);
+        }
         return getSource().get(key);
     }
 
@@ -18,6 +18,7 @@
 package one.inve.contract.ethplugin.datasource;
 
 import one.inve.contract.ethplugin.db.ByteArrayWrapper;
+import one.inve.contract.ethplugin.util.ByteArrayHashMap;
 import one.inve.contract.ethplugin.util.ByteArrayMap;
 import org.apache.commons.collections4.map.LRUMap;
 
@@ -56,7 +57,7 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
      * Installs the specific cache Map implementation
      */
     public ReadCache<Key, Value> withCache(Map<Key, Value> cache) {
-        byteKeyMap = cache instanceof ByteArrayMap;
+        byteKeyMap = cache instanceof ByteArrayMap || cache instanceof ByteArrayHashMap;
         this.cache = Collections.synchronizedMap(cache);
         return this;
     }
@@ -150,7 +151,7 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
 
         public BytesKey(Source<byte[], V> src) {
             super(src);
-            withCache(new ByteArrayMap<V>());
+            withCache(new ByteArrayHashMap<V>());
         }
 
         public ReadCache.BytesKey<V> withMaxCapacity(int maxCapacity) {
@@ -0,0 +1,217 @@
+package one.inve.contract.ethplugin.datasource;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores byte arrays outside of the Java heap in slabs of direct {@link ByteBuffer}s.
+ *
+ * Each slab is cut into equal slots of one size class (powers of two from {@link #MIN_SLOT} to {@link #MAX_SLOT}
+ * bytes) and a value occupies a single slot of the smallest class it fits. A stored value is referred by a
+ * long handle encoding the slab, the slot and the value length, so the heap only holds the handles. Every slab
+ * keeps a stack of its free slots and the slabs of a class with free slots are linked, so allocating and freeing
+ * take constant time. A slab which becomes empty is released unless it is the last one of its class, which lets
+ * the classes share the memory limit as the value sizes change; the empty last slabs are released too once the
+ * limit is reached. Direct memory of a released slab returns to the OS when the buffer is collected.
+ *
+ * The allocator is not thread-safe, callers are expected to guard it.
+ */
+public class SlabAllocator {
+
+    public static final int MIN_SLOT = 64;
+    public static final int MAX_SLOT = 4096;
+    public static final int SLAB_SIZE = 1 << 20;
+
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SLOT) - Integer.numberOfTrailingZeros(MIN_SLOT) + 1;
+
+    private static class Slab {
+        final int index;
+        final int sizeClass;
+        final int slotSize;
+        final ByteBuffer buf;
+        final int[] free;
+        int freeCount;
+        // neighbours in the list of the slabs of the class with free slots
+        Slab prev, next;
+
+        Slab(int index, int sizeClass) {
+            this.index = index;
+            this.sizeClass = sizeClass;
+            this.slotSize = MIN_SLOT << sizeClass;
+            this.buf = ByteBuffer.allocateDirect(SLAB_SIZE);
+            this.free = new int[SLAB_SIZE / slotSize];
+            for (int i = 0; i < free.length; i++) {
+                free[i] = free.length - 1 - i;
+            }
+            this.freeCount = free.length;
+        }
+
+        boolean isEmpty() {
+            return freeCount == free.length;
+        }
+
+        boolean isFull() {
+            return freeCount == 0;
+        }
+    }
+
+    private final long maxBytes;
+    // slab by index, released slabs leave null
+    private final List<Slab> slabs = new ArrayList<>();
+    private final List<Integer> freeIndexes = new ArrayList<>();
+    // first slab with free slots of each class
+    private final Slab[] available = new Slab[CLASSES];
+    private final int[] classSlabCount = new int[CLASSES];
+    private long allocatedBytes;
+    private long usedBytes;
+
+    /**
+     * @param maxBytes limit of the direct memory allocated for slabs
+     */
+    public SlabAllocator(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Copies the value to a free slot
+     * @return handle of the stored value or -1 if the value is larger than {@link #MAX_SLOT}
+     * or the memory limit is reached
+     */
+    public long allocate(byte[] value) {
+        if (value.length > MAX_SLOT) return -1;
+
+        int sizeClass = sizeClass(value.length);
+        Slab slab = available[sizeClass];
+        if (slab == null) {
+            if (allocatedBytes + SLAB_SIZE > maxBytes) releaseEmpty();
+            if (allocatedBytes + SLAB_SIZE > maxBytes) return -1;
+            slab = newSlab(sizeClass);
+        }
+
+        int slot = slab.free[--slab.freeCount];
+        if (slab.isFull()) unlink(slab);
+        slab.buf.position(slot * slab.slotSize);
+        slab.buf.put(value);
+        usedBytes += slab.slotSize;
+        return ((long) slab.index << 32) | ((long) slot << 16) | value.length;
+    }
+
+    /**
+     * @return copy of the value stored under the handle
+     */
+    public byte[] read(long handle) {
+        Slab slab = slabs.get((int) (handle >>> 32));
+        byte[] ret = new byte[length(handle)];
+        slab.buf.position(slot(handle) * slab.slotSize);
+        slab.buf.get(ret);
+        return ret;
+    }
+
+    /**
+     * Frees the slot of the handle, the handle must not be used afterwards
+     */
+    public void free(long handle) {
+        Slab slab = slabs.get((int) (handle >>> 32));
+        if (slab.isFull()) link(slab);
+        slab.free[slab.freeCount++] = slot(handle);
+        usedBytes -= slab.slotSize;
+
+        if (slab.isEmpty() && classSlabCount[slab.sizeClass] > 1) {
+            release(slab);
+        }
+    }
+
+    public static int length(long handle) {
+        return (int) (handle & 0xFFFF);
+    }
+
+    /**
+     * @return bytes taken by a value of the given length including the unused tail of its slot
+     */
+    public static int slotSize(int length) {
+        return MIN_SLOT << sizeClass(length);
+    }
+
+    /**
+     * Releases all slabs, every handle becomes invalid
+     */
+    public void clear() {
+        slabs.clear();
+        freeIndexes.clear();
+        Arrays.fill(available, null);
+        Arrays.fill(classSlabCount, 0);
+        allocatedBytes = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * @return direct memory taken by the slabs
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return memory taken by the stored values, counted in whole slots
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private Slab newSlab(int sizeClass) {
+        int index = freeIndexes.isEmpty() ? slabs.size() : freeIndexes.remove(freeIndexes.size() - 1);
+        Slab slab = new Slab(index, sizeClass);
+        if (index == slabs.size()) {
+            slabs.add(slab);
+        } else {
+            slabs.set(index, slab);
+        }
+        classSlabCount[sizeClass]++;
+        link(slab);
+        allocatedBytes += SLAB_SIZE;
+        return slab;
+    }
+
+    private void release(Slab slab) {
+        unlink(slab);
+        classSlabCount[slab.sizeClass]--;
+        slabs.set(slab.index, null);
+        freeIndexes.add(slab.index);
+        allocatedBytes -= SLAB_SIZE;
+    }
+
+    // the empty slabs left are the last ones of their classes, each is first in its list
+    private void releaseEmpty() {
+        for (Slab slab : available) {
+            if (slab != null && slab.isEmpty()) release(slab);
+        }
+    }
+
+    private void link(Slab slab) {
+        slab.prev = null;
+        slab.next = available[slab.sizeClass];
+        if (slab.next != null) slab.next.prev = slab;
+        available[slab.sizeClass] = slab;
+    }
+
+    private void unlink(Slab slab) {
+        if (slab.prev != null) {
+            slab.prev.next = slab.next;
+        } else {
+            available[slab.sizeClass] = slab.next;
+        }
+        if (slab.next != null) slab.next.prev = slab.prev;
+        slab.prev = slab.next = null;
+    }
+
+    private static int slot(long handle) {
+        return (int) ((handle >>> 16) & 0xFFFF);
+    }
+
+    private static int sizeClass(int length) {
+        if (length <= MIN_SLOT) return 0;
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - Integer.numberOfTrailingZeros(MIN_SLOT);
+    }
+}
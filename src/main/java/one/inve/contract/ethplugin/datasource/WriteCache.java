@@ -20,6 +20,7 @@ package one.inve.contract.ethplugin.datasource;
 import com.googlecode.concurentlocks.ReadWriteUpdateLock;
 import com.googlecode.concurentlocks.ReentrantReadWriteUpdateLock;
 import one.inve.contract.ethplugin.util.ALock;
+import one.inve.contract.ethplugin.util.ByteArrayHashMap;
 import one.inve.contract.ethplugin.util.ByteArrayMap;
 
 import java.util.Collection;
@@ -286,7 +287,7 @@ public class WriteCache<Key, Value> extends AbstractCachedSource<Key, Value> {
         if (checked) return;
 
         if (key instanceof byte[]) {
-            if (!(cache instanceof ByteArrayMap)) {
+            if (!(cache instanceof ByteArrayMap || cache instanceof ByteArrayHashMap)) {
                 throw new RuntimeException("Wrong map/set for byte[] key");
             }
         }
@@ -310,7 +311,7 @@ public class WriteCache<Key, Value> extends AbstractCachedSource<Key, Value> {
 
         public BytesKey(Source<byte[], V> src, CacheType cacheType) {
             super(src, cacheType);
-            withCache(new ByteArrayMap<CacheEntry<V>>());
+            withCache(new ByteArrayHashMap<CacheEntry<V>>());
         }
     }
 }
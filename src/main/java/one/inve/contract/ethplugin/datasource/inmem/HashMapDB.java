@@ -20,7 +20,7 @@ package one.inve.contract.ethplugin.datasource.inmem;
 import one.inve.contract.ethplugin.datasource.DbSettings;
 import one.inve.contract.ethplugin.datasource.DbSource;
 import one.inve.contract.ethplugin.util.ALock;
-import one.inve.contract.ethplugin.util.ByteArrayMap;
+import one.inve.contract.ethplugin.util.ByteArrayHashMap;
 import one.inve.contract.ethplugin.util.FastByteComparisons;
 
 import java.util.Map;
@@ -40,10 +40,10 @@ public class HashMapDB<V> implements DbSource<V> {
     protected ALock writeLock = new ALock(rwLock.writeLock());
 
     public HashMapDB() {
-        this(new ByteArrayMap<V>());
+        this(new ByteArrayHashMap<V>());
     }
 
-    public HashMapDB(ByteArrayMap<V> storage) {
+    public HashMapDB(Map<byte[], V> storage) {
         this.storage = storage;
     }
 
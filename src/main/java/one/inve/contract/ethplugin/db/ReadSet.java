@@ -0,0 +1,53 @@
+package one.inve.contract.ethplugin.db;
+
+import one.inve.contract.ethplugin.core.AccountState;
+import one.inve.contract.ethplugin.util.ByteArrayHashMap;
+import one.inve.contract.ethplugin.vm.DataWord;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values which a track started with {@link RepositoryImpl#startTracking(ReadSet)} has read
+ * from its parent repository. Only the first read of each key is kept: later reads either hit
+ * the same unchanged parent value or the track's own writes
+ *
+ * A speculatively executed track may be committed to the parent only while
+ * {@link RepositoryImpl#isValid(ReadSet)} holds, i.e. the parent still has all the values
+ * the track observed
+ */
+public class ReadSet {
+
+    // null values are meaningful: the account or storage row was read as absent
+    final Map<byte[], AccountState> accounts = new ByteArrayHashMap<>();
+    final Map<byte[], Map<DataWord, DataWord>> storage = new ByteArrayHashMap<>();
+
+    synchronized void accountRead(byte[] addr, AccountState state) {
+        if (!accounts.containsKey(addr)) {
+            accounts.put(addr, state);
+        }
+    }
+
+    synchronized void storageRead(byte[] addr, DataWord key, DataWord value) {
+        Map<DataWord, DataWord> rows = storage.get(addr);
+        if (rows == null) {
+            rows = new HashMap<>();
+            storage.put(addr, rows);
+        }
+        if (!rows.containsKey(key)) {
+            rows.put(key, value);
+        }
+    }
+
+    public synchronized boolean hasAccount(byte[] addr) {
+        return accounts.containsKey(addr);
+    }
+
+    public synchronized int size() {
+        int ret = accounts.size();
+        for (Map<DataWord, DataWord> rows : storage.values()) {
+            ret += rows.size();
+        }
+        return ret;
+    }
+}
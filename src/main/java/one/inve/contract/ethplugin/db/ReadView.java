@@ -0,0 +1,77 @@
+package one.inve.contract.ethplugin.db;
+
+import one.inve.contract.ethplugin.core.AccountState;
+import one.inve.contract.ethplugin.datasource.CachedSource;
+import one.inve.contract.ethplugin.vm.DataWord;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Values of a repository shared by the tracks started with {@link RepositoryImpl#startTracking(ReadSet, ReadView)}
+ * which execute concurrently, e.g. the transactions of one parallel batch.
+ *
+ * The caches and tries of the repository are not safe for concurrent use, so only the first read of each key
+ * reaches the repository under its lock, later reads of any track are lock free. A value stays in the view until
+ * it is {@link #invalidate}d by the commit of a track writing it, until then it may be older than the value of the
+ * repository. Tracks validated with {@link RepositoryImpl#isValid(ReadSet)} before their commit are not affected,
+ * a track which has read an outdated value is simply found invalid.
+ */
+public class ReadView {
+
+    // null values are meaningful, so every read is boxed
+    static final class Read<V> {
+        final V value;
+
+        Read(V value) {
+            this.value = value;
+        }
+    }
+
+    // keys are ByteArrayWrappers of the addresses
+    final ConcurrentMap<Object, Read<AccountState>> accounts = new ConcurrentHashMap<>();
+    // code is keyed by its hash, so it never changes
+    final ConcurrentMap<Object, Read<byte[]>> code = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ByteArrayWrapper, ConcurrentMap<Object, Read<DataWord>>> storage =
+            new ConcurrentHashMap<>();
+
+    ConcurrentMap<Object, Read<DataWord>> storage(byte[] addr) {
+        return storage.computeIfAbsent(new ByteArrayWrapper(addr), k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Drops every value the track is about to commit to the repository. Must be called under the lock
+     * of the repository right before the commit, so no track reads the repository in between
+     */
+    public void invalidate(RepositoryImpl track) {
+        Set<ByteArrayWrapper> modifiedAccounts = new HashSet<>();
+        for (byte[] addr : new ArrayList<>(((CachedSource<byte[], AccountState>) track.accountStateCache).getModified())) {
+            ByteArrayWrapper key = new ByteArrayWrapper(addr);
+            modifiedAccounts.add(key);
+            accounts.remove(key);
+        }
+        for (byte[] addr : new ArrayList<>(track.storageCache.getModified())) {
+            ByteArrayWrapper key = new ByteArrayWrapper(addr);
+            ConcurrentMap<Object, Read<DataWord>> rows = storage.get(key);
+            if (rows == null) continue;
+            if (modifiedAccounts.contains(key)) {
+                // the account may have been deleted along with its storage
+                storage.remove(key);
+                continue;
+            }
+            for (DataWord row : new ArrayList<>(track.storageCache.get(addr).getModified())) {
+                rows.remove(row);
+            }
+        }
+    }
+
+    /**
+     * Drops the account written to the repository directly
+     */
+    public void invalidateAccount(byte[] addr) {
+        accounts.remove(new ByteArrayWrapper(addr));
+    }
+}
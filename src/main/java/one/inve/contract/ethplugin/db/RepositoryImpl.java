@@ -31,6 +31,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import javax.annotation.Nullable;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by Anton Nashatyrev on 07.10.2016.
@@ -135,8 +136,17 @@ public class RepositoryImpl implements Repository, one.inve.contract.ethplugin.f
     @Override
     public synchronized byte[] getCode(byte[] addr) {
         byte[] codeHash = getCodeHash(addr);
-        return codeHash == null || FastByteComparisons.equal(codeHash, HashUtil.EMPTY_DATA_HASH) ?
-                ByteUtil.EMPTY_BYTE_ARRAY : codeCache.get(codeKey(codeHash, addr));
+        if (codeHash == null || FastByteComparisons.equal(codeHash, HashUtil.EMPTY_DATA_HASH)) {
+            return ByteUtil.EMPTY_BYTE_ARRAY;
+        }
+        // code is addressed by its hash, so the code cached for any repository is the code of this one
+        SharedCodeCache sharedCodeCache = SharedCodeCache.getInstance();
+        byte[] code = sharedCodeCache.get(codeHash, addr);
+        if (code == null) {
+            code = codeCache.get(codeKey(codeHash, addr));
+            sharedCodeCache.put(codeHash, addr, code);
+        }
+        return code;
     }
 
     // composing a key as there can be several contracts with the same code
@@ -194,6 +204,157 @@ public class RepositoryImpl implements Repository, one.inve.contract.ethplugin.f
         return ret;
     }
 
+    /**
+     * Starts a track like {@link #startTracking()} which records into the readSet every value it reads
+     * from this repository. Several recording tracks may execute concurrently, they read this repository through
+     * the shared view, see {@link ReadView}. Other tracks may be committed meanwhile: a recording track is committed
+     * only after {@link #isValid(ReadSet)} confirms that everything it has read is still current
+     */
+    public synchronized RepositoryImpl startTracking(final ReadSet readSet, final ReadView view) {
+        Source<byte[], AccountState> trackAccountStateCache = new WriteCache.BytesKey<>(
+                new RecordingSource<byte[], AccountState>(accountStateCache, view.accounts) {
+                    @Override
+                    protected void onRead(byte[] key, AccountState value) {
+                        readSet.accountRead(key, value);
+                    }
+                }, WriteCache.CacheType.SIMPLE);
+        Source<byte[], byte[]> trackCodeCache = new WriteCache.BytesKey<>(
+                new RecordingSource<byte[], byte[]>(codeCache, view.code), WriteCache.CacheType.SIMPLE);
+        MultiCache<CachedSource<DataWord, DataWord>> trackStorageCache =
+                new MultiCache<CachedSource<DataWord, DataWord>>(new StorageLookup()) {
+            @Override
+            protected CachedSource<DataWord, DataWord> create(final byte[] addr, CachedSource<DataWord, DataWord> srcCache) {
+                if (srcCache == null) return new WriteCache<>(srcCache, WriteCache.CacheType.SIMPLE);
+                return new WriteCache<>(new RecordingSource<DataWord, DataWord>(srcCache, view.storage(addr)) {
+                    @Override
+                    protected void onRead(DataWord key, DataWord value) {
+                        readSet.storageRead(addr, key, value);
+                    }
+                }, WriteCache.CacheType.SIMPLE);
+            }
+        };
+
+        RepositoryImpl ret = new RepositoryImpl(trackAccountStateCache, trackCodeCache, trackStorageCache);
+        ret.parent = this;
+        return ret;
+    }
+
+    /**
+     * @return true if this repository still holds every value recorded in the readSet,
+     * i.e. the track which recorded it would read exactly the same if it was started now
+     */
+    public synchronized boolean isValid(ReadSet readSet) {
+        synchronized (readSet) {
+            for (Map.Entry<byte[], AccountState> entry : readSet.accounts.entrySet()) {
+                AccountState state = accountStateCache.get(entry.getKey());
+                if (!equalStates(state, entry.getValue())) return false;
+            }
+            for (Map.Entry<byte[], Map<DataWord, DataWord>> entry : readSet.storage.entrySet()) {
+                // accounts are already known to match, storage of an absent account reads as empty
+                if (accountStateCache.get(entry.getKey()) == null) {
+                    for (DataWord value : entry.getValue().values()) {
+                        if (value != null) return false;
+                    }
+                    continue;
+                }
+                CachedSource<DataWord, DataWord> rows = storageCache.get(entry.getKey());
+                for (Map.Entry<DataWord, DataWord> row : entry.getValue().entrySet()) {
+                    if (!Objects.equals(rows.get(row.getKey()), row.getValue())) return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean equalStates(AccountState s1, AccountState s2) {
+        if (s1 == null || s2 == null) return s1 == s2;
+        return FastByteComparisons.equal(s1.getEncoded(), s2.getEncoded());
+    }
+
+    /**
+     * Reads the source of this repository through the shared view, only a value missing in the view is read
+     * under the repository lock. Writes pass through under the repository lock
+     */
+    private class RecordingSource<Key, Value> extends AbstractChainedSource<Key, Value, Key, Value> {
+        private final ConcurrentMap<Object, ReadView.Read<Value>> reads;
+
+        RecordingSource(Source<Key, Value> src, ConcurrentMap<Object, ReadView.Read<Value>> reads) {
+            super(src);
+            this.reads = reads;
+        }
+
+        protected void onRead(Key key, Value value) {
+        }
+
+        @Override
+        public Value get(Key key) {
+            Object viewKey = key instanceof byte[] ? new ByteArrayWrapper((byte[]) key) : key;
+            ReadView.Read<Value> read = reads.get(viewKey);
+            if (read == null) {
+                synchronized (RepositoryImpl.this) {
+                    read = reads.get(viewKey);
+                    if (read == null) {
+                        read = new ReadView.Read<>(getSource().get(key));
+                        reads.put(viewKey, read);
+                    }
+                }
+            }
+            onRead(key, read.value);
+            return read.value;
+        }
+
+        @Override
+        public void put(Key key, Value val) {
+            synchronized (RepositoryImpl.this) {
+                getSource().put(key, val);
+            }
+        }
+
+        @Override
+        public void delete(Key key) {
+            synchronized (RepositoryImpl.this) {
+                getSource().delete(key);
+            }
+        }
+
+        @Override
+        protected boolean flushImpl() {
+            return false;
+        }
+    }
+
+    /**
+     * Looks up the storage caches of contracts of this repository under the repository lock,
+     * as creating one reads the account
+     */
+    private class StorageLookup implements Source<byte[], CachedSource<DataWord, DataWord>> {
+
+        @Override
+        public CachedSource<DataWord, DataWord> get(byte[] addr) {
+            synchronized (RepositoryImpl.this) {
+                return storageCache.get(addr);
+            }
+        }
+
+        @Override
+        public void put(byte[] addr, CachedSource<DataWord, DataWord> val) {
+            // storage caches of this repository are never missing, so a track never puts its own
+            throw new UnsupportedOperationException("Storage cache of a tracked repository can't be replaced");
+        }
+
+        @Override
+        public void delete(byte[] addr) {
+            synchronized (RepositoryImpl.this) {
+                storageCache.delete(addr);
+            }
+        }
+
+        @Override
+        public boolean flush() {
+            return false;
+        }
+    }
+
     @Override
     public synchronized Repository getSnapshotTo(byte[] root) {
         return parent.getSnapshotTo(root);
@@ -0,0 +1,184 @@
+package one.inve.contract.ethplugin.db;
+
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.util.ClockCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM wide cache of contract code keyed by code hash.
+ *
+ * Code is addressed by its hash, so one entry serves every repository, snapshot, track and dbId shard
+ * holding the same code and {@link RepositoryImpl#getCode} doesn't walk its cache chain down to the database
+ * for a contract called over and over. The cache is bounded by the total code size, code is evicted in
+ * approximate LRU order, see {@link ClockCache}.
+ *
+ * The code of pinned addresses ({@code inve.repository.pinnedContracts} or {@link #pin}) is never evicted once
+ * read. Reads are counted per contract address, for the pinned ones and up to {@value #MAX_TRACKED} others.
+ */
+public class SharedCodeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger("repository");
+
+    private static final int MAX_TRACKED = 1024;
+
+    private static volatile SharedCodeCache instance;
+
+    // weighted by the code length
+    private final ClockCache<ByteArrayWrapper, byte[]> entries;
+
+    private final Set<ByteArrayWrapper> pinned = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<ByteArrayWrapper, LongAdder> contractHits = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity maximal total length of the cached code in bytes, pinned code excluded; 0 caches pinned code only
+     */
+    public SharedCodeCache(long capacity) {
+        this.entries = new ClockCache<>(capacity, code -> code.length);
+    }
+
+    public static SharedCodeCache getInstance() {
+        if (instance == null) {
+            synchronized (SharedCodeCache.class) {
+                if (instance == null) {
+                    SystemProperties config = SystemProperties.getDefault();
+                    SharedCodeCache cache = new SharedCodeCache(config.repositoryCodeCacheSize());
+                    for (String addr : config.repositoryPinnedContracts()) {
+                        cache.pin(Hex.decode(addr.startsWith("0x") ? addr.substring(2) : addr));
+                    }
+                    instance = cache;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return cached code with the hash or null, the read is counted for the contract
+     */
+    public byte[] get(byte[] codeHash, byte[] addr) {
+        ByteArrayWrapper key = new ByteArrayWrapper(codeHash);
+        byte[] code = entries.get(key);
+        if (code == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (addr != null && !pinned.isEmpty() && pinned.contains(new ByteArrayWrapper(addr))) {
+            entries.pin(key);
+        }
+        countHit(addr);
+        return code;
+    }
+
+    /**
+     * Caches code read from a repository, the code must match the hash
+     */
+    public void put(byte[] codeHash, byte[] addr, byte[] code) {
+        boolean pin = addr != null && pinned.contains(new ByteArrayWrapper(addr));
+        if (code == null || (!pin && code.length > entries.getCapacity())) return;
+
+        ByteArrayWrapper key = new ByteArrayWrapper(codeHash);
+        if (entries.putIfAbsent(key, code, pin) != null && pin) {
+            entries.pin(key);
+        }
+    }
+
+    private void countHit(byte[] addr) {
+        if (addr == null) return;
+        ByteArrayWrapper key = new ByteArrayWrapper(addr);
+        LongAdder counter = contractHits.get(key);
+        if (counter == null) {
+            if (contractHits.size() >= MAX_TRACKED && !pinned.contains(key)) return;
+            counter = contractHits.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Keeps the code of the contract cached from its next read on
+     */
+    public void pin(byte[] addr) {
+        ByteArrayWrapper key = new ByteArrayWrapper(addr);
+        pinned.add(key);
+        contractHits.computeIfAbsent(key, k -> new LongAdder());
+        logger.info("Pinned code of contract {}", Hex.toHexString(addr));
+    }
+
+    public boolean isPinned(byte[] addr) {
+        return pinned.contains(new ByteArrayWrapper(addr));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return length of the cached unpinned code
+     */
+    public long getCodeSize() {
+        return entries.getWeight();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return number of cached code reads of the contract
+     */
+    public long getHits(byte[] addr) {
+        LongAdder counter = contractHits.get(new ByteArrayWrapper(addr));
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return hex addresses of the most read contracts with their read counts, most read first
+     */
+    public Map<String, Long> getTopContracts(int limit) {
+        List<Map.Entry<ByteArrayWrapper, Long>> counts = new ArrayList<>();
+        for (Map.Entry<ByteArrayWrapper, LongAdder> entry : contractHits.entrySet()) {
+            counts.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        counts.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+        Map<String, Long> ret = new LinkedHashMap<>();
+        for (Map.Entry<ByteArrayWrapper, Long> entry : counts.subList(0, Math.min(limit, counts.size()))) {
+            ret.put(Hex.toHexString(entry.getKey().getData()), entry.getValue());
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SharedCodeCache[entries: %d, code: %d/%d bytes, pinned contracts: %d, hits: %d, misses: %d, evictions: %d, hit rate: %.2f]",
+                size(), getCodeSize(), entries.getCapacity(), pinned.size(), getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+}
@@ -5,7 +5,7 @@ import one.inve.contract.ethplugin.datasource.CountingQuotientFilter;
 import one.inve.contract.ethplugin.datasource.JournalSource;
 import one.inve.contract.ethplugin.datasource.QuotientFilter;
 import one.inve.contract.ethplugin.datasource.Source;
-import one.inve.contract.ethplugin.util.ByteArraySet;
+import one.inve.contract.ethplugin.util.ByteArrayHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -329,8 +329,8 @@ public class Pruner {
 
         // track nodes inserted and deleted in forks
         // to avoid deletion of those nodes which were originally inserted in the main chain
-        Set<byte[]> insertedInMainChain = new ByteArraySet();
-        Set<byte[]> insertedInForks = new ByteArraySet();
+        Set<byte[]> insertedInMainChain = new ByteArrayHashSet();
+        Set<byte[]> insertedInForks = new ByteArrayHashSet();
         int nodesDeleted = 0;
 
         private void revert(Chain chain) {
@@ -436,6 +436,7 @@ public class TrieImpl implements Trie<byte[]> {
     private Source<byte[], byte[]> cache;
     private Node root;
     private boolean async = true;
+    private boolean releaseOnFlush = true;
 
     public TrieImpl() {
         this((byte[]) null);
@@ -457,6 +458,15 @@ public class TrieImpl implements Trie<byte[]> {
         this.async = async;
     }
 
+    /**
+     * When false {@link #flush()} keeps the decoded nodes with their hashes, so that the next updates
+     * and root hash calculations don't resolve and hash the clean subtrees again. The nodes are then
+     * released by {@link #release()}
+     */
+    public void setReleaseOnFlush(boolean releaseOnFlush) {
+        this.releaseOnFlush = releaseOnFlush;
+    }
+
     private void encode() {
         if (root != null) {
             root.encode();
@@ -663,14 +673,25 @@ public class TrieImpl implements Trie<byte[]> {
         if (root != null && root.dirty) {
             // persist all dirty nodes to underlying Source
             encode();
-            // release all Trie Node instances for GC
-            root = new Node(root.hash);
+            if (releaseOnFlush) {
+                // release all Trie Node instances for GC
+                root = new Node(root.hash);
+            }
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Releases all Trie Node instances kept after {@link #flush()}, does nothing if there are unflushed changes
+     */
+    public void release() {
+        if (root != null && !root.dirty && root.hash != null) {
+            root = new Node(root.hash);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,318 @@
+package one.inve.contract.ethplugin.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Hash map with byte[] keys compared by content.
+ *
+ * Unlike {@link ByteArrayMap} keys are not wrapped: keys, values and key hashes are kept in parallel arrays with
+ * open addressing and linear probing, so neither a lookup nor an insertion allocates. Removal shifts the following
+ * entries of the probe sequence back instead of leaving tombstones. The hashes of 20 byte (address) and 32 byte
+ * (hash) keys are calculated a word at a time.
+ *
+ * Entries returned by iterators are snapshots, {@link Map.Entry#setValue} is not supported.
+ * The map is not thread-safe.
+ */
+public class ByteArrayHashMap<V> extends AbstractMap<byte[], V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private byte[][] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int size;
+    // number of bits of the table index
+    private int bits;
+    private int modCount;
+
+    public ByteArrayHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public ByteArrayHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new byte[capacity][];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        bits = Integer.numberOfTrailingZeros(capacity);
+    }
+
+    static int hash(byte[] key) {
+        int h;
+        switch (key.length) {
+            case 20:
+                h = 1;
+                for (int i = 0; i < 20; i += 4) h = 31 * h + readInt(key, i);
+                break;
+            case 32:
+                h = 1;
+                for (int i = 0; i < 32; i += 4) h = 31 * h + readInt(key, i);
+                break;
+            default:
+                h = Arrays.hashCode(key);
+        }
+        return h;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    // Fibonacci hashing spreads the hash over the high bits taken as the index
+    private int indexOf(int hash) {
+        return (hash * 0x9E3779B9) >>> (32 - bits);
+    }
+
+    // slot of the key or -1
+    private int find(byte[] key) {
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        for (int i = indexOf(hash); keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && keys[i].length == key.length && FastByteComparisons.equal(keys[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find((byte[]) key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = find((byte[]) key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(byte[] key, V value) {
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        int i = indexOf(hash);
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && keys[i].length == key.length && FastByteComparisons.equal(keys[i], key)) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        hashes[i] = hash;
+        modCount++;
+        // load factor of 1/2 keeps probe sequences short
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = find((byte[]) key);
+        if (i < 0) return null;
+        V old = (V) values[i];
+        removeAt(i, null);
+        return old;
+    }
+
+    @Override
+    public void putAll(Map<? extends byte[], ? extends V> m) {
+        for (Entry<? extends byte[], ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Empties the slot and moves back the entries of the probe sequence which follow it.
+     * @param wrapped if not null collects the keys moved from the start of the table to its end
+     */
+    private void removeAt(int slot, List<byte[]> wrapped) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+            int home = indexOf(hashes[i]);
+            // the entry can fill the hole if its home slot is not between the hole and its slot
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                if (wrapped != null && i < hole) wrapped.add(keys[i]);
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hashes[hole] = hashes[i];
+                hole = i;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+        modCount++;
+    }
+
+    private void resize(int capacity) {
+        byte[][] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = indexOf(oldHashes[j]);
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    @Override
+    public Set<byte[]> keySet() {
+        return new AbstractSet<byte[]>() {
+            @Override
+            public Iterator<byte[]> iterator() {
+                return new SlotIterator<byte[]>() {
+                    @Override
+                    byte[] get(byte[] key, Object value) {
+                        return key;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                int i = find((byte[]) o);
+                if (i < 0) return false;
+                removeAt(i, null);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                ByteArrayHashMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<byte[], V>> entrySet() {
+        return new AbstractSet<Entry<byte[], V>>() {
+            @Override
+            public Iterator<Entry<byte[], V>> iterator() {
+                return new SlotIterator<Entry<byte[], V>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Entry<byte[], V> get(byte[] key, Object value) {
+                        return new SimpleImmutableEntry<>(key, (V) value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                ByteArrayHashMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Walks the table from the end to the start. Removal through the iterator only moves entries towards
+     * the visited end, except for those wrapping around from the start which are remembered and visited last
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        int next = keys.length;
+        int last = -1;
+        List<byte[]> wrapped;
+        int wrappedPos;
+        byte[] lastWrapped;
+        int expectedModCount = modCount;
+
+        abstract T get(byte[] key, Object value);
+
+        @Override
+        public boolean hasNext() {
+            while (next > 0 && keys[next - 1] == null) next--;
+            return next > 0 || (wrapped != null && wrappedPos < wrapped.size());
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            if (next > 0) {
+                last = --next;
+                lastWrapped = null;
+                return get(keys[last], values[last]);
+            }
+            lastWrapped = wrapped.get(wrappedPos++);
+            last = -1;
+            return get(lastWrapped, ByteArrayHashMap.this.get(lastWrapped));
+        }
+
+        @Override
+        public void remove() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (last >= 0) {
+                if (wrapped == null) wrapped = new ArrayList<>();
+                removeAt(last, wrapped);
+                last = -1;
+            } else if (lastWrapped != null) {
+                ByteArrayHashMap.this.remove(lastWrapped);
+                lastWrapped = null;
+            } else {
+                throw new IllegalStateException();
+            }
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package one.inve.contract.ethplugin.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Set of byte[] compared by content, backed by a {@link ByteArrayHashMap} so that neither the elements
+ * are wrapped nor an entry object is created per element
+ */
+public class ByteArrayHashSet extends AbstractSet<byte[]> {
+
+    private final ByteArrayHashMap<Boolean> map;
+
+    public ByteArrayHashSet() {
+        map = new ByteArrayHashMap<>();
+    }
+
+    public ByteArrayHashSet(int expectedSize) {
+        map = new ByteArrayHashMap<>(expectedSize);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+        return map.keySet().iterator();
+    }
+
+    @Override
+    public boolean add(byte[] bytes) {
+        return map.put(bytes, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return map.remove(o) != null;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object el : c) {
+            changed |= remove(el);
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+}
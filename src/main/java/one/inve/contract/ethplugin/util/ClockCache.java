@@ -0,0 +1,176 @@
+package one.inve.contract.ethplugin.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Concurrent cache bounded by the total weight of its values with CLOCK (second chance) eviction,
+ * an approximation of LRU.
+ *
+ * Lookups are lock free and only mark the entry as referenced. Added entries are queued in a ring which the
+ * clock hand sweeps under the cache lock when the capacity is exceeded: a referenced entry loses its mark and
+ * is queued again, an unreferenced one is evicted. Each eviction thus takes amortized constant time.
+ *
+ * Pinned entries are never evicted and don't count towards the capacity.
+ */
+public class ClockCache<K, V> {
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        volatile boolean referenced;
+        volatile boolean pinned;
+        // the weight is accounted and the node is in the ring or pinned, guarded by the cache
+        boolean admitted;
+
+        Node(K key, V value, int weight, boolean pinned) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.pinned = pinned;
+        }
+    }
+
+    private final long capacity;
+    private final ToIntFunction<V> weigher;
+    private final ConcurrentHashMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+
+    // guarded by this: unpinned entries in the order the clock hand visits them, removed entries are dropped
+    // when the hand reaches them; total weight of the unpinned entries
+    private final ArrayDeque<Node<K, V>> ring = new ArrayDeque<>();
+    private long weight;
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximal total weight of the unpinned values
+     * @param weigher weight of a value, e.g. its length in bytes
+     */
+    public ClockCache(long capacity, ToIntFunction<V> weigher) {
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return cached value or null
+     */
+    public V get(K key) {
+        Node<K, V> node = entries.get(key);
+        if (node == null) return null;
+        node.referenced = true;
+        return node.value;
+    }
+
+    /**
+     * Returns the cached value or loads and caches it, concurrent loads of the same key wait for a single one
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        Node<K, V> node = entries.get(key);
+        if (node == null) {
+            boolean[] added = new boolean[1];
+            node = entries.computeIfAbsent(key, k -> {
+                added[0] = true;
+                V value = loader.apply(k);
+                return new Node<>(k, value, weigher.applyAsInt(value), false);
+            });
+            if (added[0]) {
+                admit(node);
+                return node.value;
+            }
+        }
+        node.referenced = true;
+        return node.value;
+    }
+
+    /**
+     * Caches the value unless the key is cached already
+     *
+     * @param pinned the value is never evicted
+     * @return value cached before or null
+     */
+    public V putIfAbsent(K key, V value, boolean pinned) {
+        Node<K, V> node = new Node<>(key, value, weigher.applyAsInt(value), pinned);
+        Node<K, V> old = entries.putIfAbsent(key, node);
+        if (old != null) return old.value;
+        admit(node);
+        return null;
+    }
+
+    private synchronized void admit(Node<K, V> node) {
+        // removed or cleared meanwhile
+        if (entries.get(node.key) != node) return;
+        node.admitted = true;
+        if (node.pinned) return;
+        ring.addLast(node);
+        weight += node.weight;
+        if (weight > capacity) evict();
+    }
+
+    private void evict() {
+        while (weight > capacity && !ring.isEmpty()) {
+            Node<K, V> node = ring.pollFirst();
+            if (node.pinned || entries.get(node.key) != node) continue;
+            if (node.referenced) {
+                node.referenced = false;
+                ring.addLast(node);
+                continue;
+            }
+            entries.remove(node.key, node);
+            weight -= node.weight;
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Keeps the cached value of the key from being evicted
+     */
+    public void pin(K key) {
+        Node<K, V> node = entries.get(key);
+        if (node == null || node.pinned) return;
+        synchronized (this) {
+            if (node.pinned || entries.get(key) != node) return;
+            node.pinned = true;
+            // left in the ring until the hand drops it
+            if (node.admitted) weight -= node.weight;
+        }
+    }
+
+    /**
+     * Removes the key if it is cached with the value
+     */
+    public synchronized boolean remove(K key, V value) {
+        Node<K, V> node = entries.get(key);
+        if (node == null || node.value != value || !entries.remove(key, node)) return false;
+        if (node.admitted && !node.pinned) weight -= node.weight;
+        return true;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        ring.clear();
+        weight = 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return total weight of the unpinned values
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -66,7 +66,7 @@ public class RLP {
 
     public static final byte[] EMPTY_ELEMENT_RLP = encodeElement(new byte[0]);
 
-    private static final int MAX_DEPTH = 16;
+    static final int MAX_DEPTH = 16;
 
     /**
      * Allow for content up to size of 2^64 bytes *
@@ -82,7 +82,7 @@ public class RLP {
      * - so 56 and 2^64 space seems like the right place to put the cutoff
      * - also, that's where Bitcoin's varint does the cutof
      */
-    private static final int SIZE_THRESHOLD = 56;
+    static final int SIZE_THRESHOLD = 56;
 
     /** RLP encoding rules are defined as follows: */
 
@@ -97,7 +97,7 @@ public class RLP {
      * byte with value 0x80 plus the length of the string followed by the
      * string. The range of the first byte is thus [0x80, 0xb7].
      */
-    private static final int OFFSET_SHORT_ITEM = 0x80;
+    static final int OFFSET_SHORT_ITEM = 0x80;
 
     /**
      * [0xb7]
@@ -108,7 +108,7 @@ public class RLP {
      * \xb9\x04\x00 followed by the string. The range of the first byte is thus
      * [0xb8, 0xbf].
      */
-    private static final int OFFSET_LONG_ITEM = 0xb7;
+    static final int OFFSET_LONG_ITEM = 0xb7;
 
     /**
      * [0xc0]
@@ -118,7 +118,7 @@ public class RLP {
      * of the RLP encodings of the items. The range of the first byte is thus
      * [0xc0, 0xf7].
      */
-    private static final int OFFSET_SHORT_LIST = 0xc0;
+    static final int OFFSET_SHORT_LIST = 0xc0;
 
     /**
      * [0xf7]
@@ -128,7 +128,7 @@ public class RLP {
      * followed by the concatenation of the RLP encodings of the items. The
      * range of the first byte is thus [0xf8, 0xff].
      */
-    private static final int OFFSET_LONG_LIST = 0xf7;
+    static final int OFFSET_LONG_LIST = 0xf7;
 
 
     /* ******************************************************
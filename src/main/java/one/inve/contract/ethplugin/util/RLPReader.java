@@ -0,0 +1,277 @@
+package one.inve.contract.ethplugin.util;
+
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static one.inve.contract.ethplugin.util.RLP.*;
+
+/**
+ * Cursor over RLP encoded data which reads the items in place.
+ *
+ * {@link #next()} moves to the following item of the current level and only parses its header, the payload is
+ * exposed as an offset and length into the underlying array. Nested lists are read with a new reader over the
+ * list payload from {@link #getList()}, so neither items nor lists are copied unless the caller asks for the bytes.
+ * Unlike {@link RLP#decode2(byte[])} nothing is allocated for the items which are skipped.
+ *
+ * Non canonical headers are rejected the same way as by {@link RLP#decode2(byte[])}. Decoders which used to
+ * cast the elements of {@link RLP#decode2(byte[])} get the same exceptions: {@link IndexOutOfBoundsException}
+ * when reading past the last item and {@link ClassCastException} from {@link #getList()} and {@link #nextItem()}
+ * when the item is of the other kind.
+ */
+public class RLPReader {
+
+    private final byte[] data;
+    private final int end;
+    // start of the next item
+    private int pos;
+
+    // current item
+    private int itemStart = -1;
+    private int offset;
+    private int length;
+    private boolean list;
+
+    public RLPReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public RLPReader(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("RLP range " + offset + "+" + length + " is out of " + data.length);
+        }
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Reads the remaining bytes of the buffer, the bytes are copied only if the buffer is not backed by an array
+     */
+    public RLPReader(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            this.data = buf.array();
+            this.pos = buf.arrayOffset() + buf.position();
+        } else {
+            this.data = new byte[buf.remaining()];
+            buf.duplicate().get(data);
+            this.pos = 0;
+        }
+        this.end = pos + buf.remaining();
+    }
+
+    /**
+     * Checks the whole data like {@link RLP#decode2(byte[])} does, so malformed nested items are rejected up front
+     * even if the caller never reads them, and requires the data to be a single list
+     *
+     * @return reader over the elements of the list encoded in the data, e.g. of an encoded transaction
+     * @throws RuntimeException if the data is malformed or there is data after the list
+     * @throws IndexOutOfBoundsException if the data is empty
+     * @throws ClassCastException if the data is not a list
+     */
+    public static RLPReader list(byte[] rlp) {
+        validate(new RLPReader(rlp), 0);
+        RLPReader reader = new RLPReader(rlp).next();
+        RLPReader ret = reader.getList();
+        if (reader.hasNext()) throw reader.error("Data after the RLP list");
+        return ret;
+    }
+
+    private static void validate(RLPReader reader, int level) {
+        if (level > MAX_DEPTH) {
+            throw new RuntimeException(String.format("Error: Traversing over max RLP depth (%s)", MAX_DEPTH));
+        }
+        while (reader.hasNext()) {
+            if (reader.next().list && reader.length > 0) validate(reader.getList(), level + 1);
+        }
+    }
+
+    public boolean hasNext() {
+        return pos < end;
+    }
+
+    /**
+     * Moves to the next item
+     * @throws IndexOutOfBoundsException if there are no more items
+     * @throws RuntimeException if the item header is malformed
+     */
+    public RLPReader next() {
+        if (pos >= end) throw new IndexOutOfBoundsException("No more RLP items");
+
+        int prefix = data[pos] & 0xFF;
+        itemStart = pos;
+        if (prefix < OFFSET_SHORT_ITEM) {
+            // single byte, it is its own encoding
+            offset = pos;
+            length = 1;
+            list = false;
+        } else if (prefix <= OFFSET_LONG_ITEM) {
+            offset = pos + 1;
+            length = prefix - OFFSET_SHORT_ITEM;
+            list = false;
+            if (length == 1 && offset < end && (data[offset] & 0xFF) < OFFSET_SHORT_ITEM) {
+                throw error("Single byte has been encoded as byte string");
+            }
+        } else if (prefix < OFFSET_SHORT_LIST) {
+            int lengthOfLength = prefix - OFFSET_LONG_ITEM;
+            offset = pos + 1 + lengthOfLength;
+            length = readLength(pos + 1, lengthOfLength);
+            list = false;
+            if (length < SIZE_THRESHOLD) throw error("Short item has been encoded as long item");
+        } else if (prefix <= OFFSET_LONG_LIST) {
+            offset = pos + 1;
+            length = prefix - OFFSET_SHORT_LIST;
+            list = true;
+        } else {
+            int lengthOfLength = prefix - OFFSET_LONG_LIST;
+            offset = pos + 1 + lengthOfLength;
+            length = readLength(pos + 1, lengthOfLength);
+            list = true;
+            if (length < SIZE_THRESHOLD) throw error("Short list has been encoded as long list");
+        }
+
+        if (offset > end || length > end - offset) {
+            throw error(String.format("Length parsed from RLP (%s bytes) is greater than possible size of data (%s bytes)",
+                    length, end - Math.min(offset, end)));
+        }
+        pos = offset + length;
+        return this;
+    }
+
+    /**
+     * Moves to the next item which must not be a list
+     * @throws ClassCastException if the item is a list
+     */
+    public RLPReader nextItem() {
+        if (next().list) throw new ClassCastException("RLP item expected");
+        return this;
+    }
+
+    /**
+     * Skips the given number of items
+     */
+    public RLPReader skip(int items) {
+        for (int i = 0; i < items; i++) {
+            next();
+        }
+        return this;
+    }
+
+    private int readLength(int off, int lengthOfLength) {
+        if (lengthOfLength > 4 || off + lengthOfLength > end) throw error("Invalid RLP length");
+        if (data[off] == 0) throw error("RLP length contains leading zeros");
+        long ret = 0;
+        for (int i = 0; i < lengthOfLength; i++) {
+            ret = (ret << 8) | (data[off + i] & 0xFF);
+        }
+        if (ret > Integer.MAX_VALUE) throw error("Invalid RLP length");
+        return (int) ret;
+    }
+
+    private RuntimeException error(String msg) {
+        return new RuntimeException("RLP wrong encoding (" + Hex.toHexString(data, itemStart, Math.min(end - itemStart, 64))
+                + "): " + msg);
+    }
+
+    private void checkItem() {
+        if (itemStart < 0) throw new IllegalStateException("next() has not been called");
+    }
+
+    public boolean isList() {
+        checkItem();
+        return list;
+    }
+
+    /**
+     * @return array the reader reads from, the payload of the current item is at {@link #getOffset()}
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return offset of the payload of the current item
+     */
+    public int getOffset() {
+        checkItem();
+        return offset;
+    }
+
+    /**
+     * @return length of the payload of the current item
+     */
+    public int getLength() {
+        checkItem();
+        return length;
+    }
+
+    public boolean isEmpty() {
+        checkItem();
+        return length == 0;
+    }
+
+    /**
+     * @return reader over the elements of the current item which must be a list
+     * @throws ClassCastException if the item is not a list
+     */
+    public RLPReader getList() {
+        if (!isList()) throw new ClassCastException("RLP list expected");
+        return new RLPReader(data, offset, length);
+    }
+
+    /**
+     * @return copy of the payload of the current item
+     */
+    public byte[] getBytes() {
+        checkItem();
+        return length == 0 ? ByteUtil.EMPTY_BYTE_ARRAY : Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * Same as {@link RLPItem#getRLPData()}: an empty item is null
+     */
+    public byte[] getBytesOrNull() {
+        checkItem();
+        return length == 0 ? null : Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    /**
+     * Same as {@link RLPElement#getRLPData()}: the payload of an item, null if it is empty, or the whole
+     * encoding of a list
+     */
+    public byte[] getRLPData() {
+        return isList() ? getEncoded() : getBytesOrNull();
+    }
+
+    /**
+     * @return copy of the whole current item including its header
+     */
+    public byte[] getEncoded() {
+        checkItem();
+        return Arrays.copyOfRange(data, itemStart, offset + length);
+    }
+
+    public long getLong() {
+        checkItem();
+        if (length > 8) throw error("Value doesn't fit into long");
+        long ret = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ret = (ret << 8) | (data[i] & 0xFF);
+        }
+        return ret;
+    }
+
+    public int getInt() {
+        checkItem();
+        if (length > 4) throw error("Value doesn't fit into int");
+        return (int) getLong();
+    }
+
+    public BigInteger getBigInteger() {
+        checkItem();
+        if (length == 0) return BigInteger.ZERO;
+        return new BigInteger(1, Arrays.copyOfRange(data, offset, offset + length));
+    }
+}
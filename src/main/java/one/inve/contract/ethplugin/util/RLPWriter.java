@@ -0,0 +1,177 @@
+package one.inve.contract.ethplugin.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static one.inve.contract.ethplugin.util.RLP.*;
+
+/**
+ * Encodes RLP into a single growable buffer.
+ *
+ * Items are written directly in their encoded form and a list gets its header when it is closed by
+ * {@link #endList()}, so no intermediate arrays are created for the elements as with
+ * {@link RLP#encodeElement(byte[])} and {@link RLP#encodeList(byte[]...)}. The output is identical to
+ * those methods. After {@link #reset()} the writer reuses its buffer; it is not thread-safe.
+ */
+public class RLPWriter {
+
+    private byte[] buf;
+    private int size;
+    // start offsets of the open lists
+    private int[] lists = new int[8];
+    private int depth;
+
+    public RLPWriter() {
+        this(256);
+    }
+
+    public RLPWriter(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+
+    /**
+     * Opens a list, the following items become its elements until {@link #endList()}
+     */
+    public RLPWriter startList() {
+        if (depth == lists.length) lists = Arrays.copyOf(lists, depth * 2);
+        lists[depth++] = size;
+        // room for a short list header, moved on close if a long one is needed
+        ensure(1);
+        size++;
+        return this;
+    }
+
+    public RLPWriter endList() {
+        if (depth == 0) throw new IllegalStateException("No open list");
+        int start = lists[--depth];
+        int payload = size - start - 1;
+        if (payload < SIZE_THRESHOLD) {
+            buf[start] = (byte) (OFFSET_SHORT_LIST + payload);
+        } else {
+            int lengthOfLength = lengthOfLength(payload);
+            ensure(lengthOfLength);
+            System.arraycopy(buf, start + 1, buf, start + 1 + lengthOfLength, payload);
+            buf[start] = (byte) (OFFSET_LONG_LIST + lengthOfLength);
+            writeLength(start + 1, payload, lengthOfLength);
+            size += lengthOfLength;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the bytes as an item, same as {@link RLP#encodeElement(byte[])}
+     */
+    public RLPWriter writeBytes(byte[] value) {
+        return value == null ? writeBytes(value, 0, 0) : writeBytes(value, 0, value.length);
+    }
+
+    public RLPWriter writeBytes(byte[] value, int off, int len) {
+        if (len == 1 && (value[off] & 0xFF) < OFFSET_SHORT_ITEM) {
+            ensure(1);
+            buf[size++] = value[off];
+            return this;
+        }
+        writeItemHeader(len);
+        ensure(len);
+        if (len > 0) System.arraycopy(value, off, buf, size, len);
+        size += len;
+        return this;
+    }
+
+    /**
+     * Writes the number with no leading zeroes, zero is an empty item,
+     * same as {@link RLP#encodeBigInteger(BigInteger)}
+     */
+    public RLPWriter writeBigInteger(BigInteger value) {
+        if (value.signum() < 0) throw new RuntimeException("negative numbers are not allowed");
+        if (value.bitLength() <= 63) return writeLong(value.longValue());
+        byte[] bytes = value.toByteArray();
+        // strip the sign byte
+        return bytes[0] == 0 ? writeBytes(bytes, 1, bytes.length - 1) : writeBytes(bytes);
+    }
+
+    /**
+     * Writes the number with no leading zeroes, zero is an empty item,
+     * same as {@link RLP#encodeInt(int)} for non negative numbers
+     */
+    public RLPWriter writeLong(long value) {
+        if (value < 0) throw new RuntimeException("negative numbers are not allowed");
+        if (value == 0) {
+            ensure(1);
+            buf[size++] = (byte) OFFSET_SHORT_ITEM;
+            return this;
+        }
+        if (value < OFFSET_SHORT_ITEM) {
+            ensure(1);
+            buf[size++] = (byte) value;
+            return this;
+        }
+        int len = (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+        ensure(1 + len);
+        buf[size++] = (byte) (OFFSET_SHORT_ITEM + len);
+        for (int i = len - 1; i >= 0; i--) {
+            buf[size++] = (byte) (value >>> (8 * i));
+        }
+        return this;
+    }
+
+    /**
+     * Appends already encoded RLP, e.g. a nested structure encoded by another writer
+     */
+    public RLPWriter writeEncoded(byte[] rlp) {
+        ensure(rlp.length);
+        System.arraycopy(rlp, 0, buf, size, rlp.length);
+        size += rlp.length;
+        return this;
+    }
+
+    private void writeItemHeader(int len) {
+        if (len < SIZE_THRESHOLD) {
+            ensure(1);
+            buf[size++] = (byte) (OFFSET_SHORT_ITEM + len);
+        } else {
+            int lengthOfLength = lengthOfLength(len);
+            ensure(1 + lengthOfLength);
+            buf[size] = (byte) (OFFSET_LONG_ITEM + lengthOfLength);
+            writeLength(size + 1, len, lengthOfLength);
+            size += 1 + lengthOfLength;
+        }
+    }
+
+    private static int lengthOfLength(int length) {
+        return (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+    }
+
+    private void writeLength(int off, int length, int lengthOfLength) {
+        for (int i = lengthOfLength - 1; i >= 0; i--) {
+            buf[off++] = (byte) (length >>> (8 * i));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return copy of the encoded data, all lists must be closed
+     */
+    public byte[] toByteArray() {
+        if (depth != 0) throw new IllegalStateException(depth + " lists are not closed");
+        return Arrays.copyOf(buf, size);
+    }
+
+    /**
+     * Discards the written data keeping the buffer for the next encoding
+     */
+    public RLPWriter reset() {
+        size = 0;
+        depth = 0;
+        return this;
+    }
+}
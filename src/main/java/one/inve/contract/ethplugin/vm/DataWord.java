@@ -49,6 +49,8 @@ public final class DataWord implements Comparable<DataWord> {
     public static final long MEM_SIZE = 32 + 16 + 16;
 
     private final byte[] data;
+    // UInt256 limbs of data, built on first use
+    private volatile long[] limbs;
 
     /**
      * Unsafe private constructor
@@ -66,6 +68,12 @@ public final class DataWord implements Comparable<DataWord> {
         this.data = data;
     }
 
+    private static DataWord fromLimbs(long[] limbs) {
+        DataWord word = new DataWord(UInt256.toBytes(limbs));
+        word.limbs = limbs;
+        return word;
+    }
+
     public static DataWord of(byte[] data) {
         if (data == null || data.length == 0) {
             return DataWord.ZERO;
@@ -89,6 +97,13 @@ public final class DataWord implements Comparable<DataWord> {
         }
     }
 
+    /**
+     * @return word of the 32 bytes of the array starting at the offset
+     */
+    public static DataWord of(byte[] data, int offset) {
+        return new DataWord(Arrays.copyOfRange(data, offset, offset + 32));
+    }
+
     public static DataWord of(ByteArrayWrapper wrappedData) {
         return of(wrappedData.getData());
     }
@@ -123,6 +138,13 @@ public final class DataWord implements Comparable<DataWord> {
         return Arrays.copyOf(data, data.length);
     }
 
+    /**
+     * Copies the 32 bytes of the word into the array at the offset
+     */
+    public void copyTo(byte[] dest, int destPos) {
+        System.arraycopy(data, 0, dest, destPos, 32);
+    }
+
     /**
      * Returns copy of instance data
      * @return copy of instance data
@@ -249,26 +271,19 @@ public final class DataWord implements Comparable<DataWord> {
 
     public DataWord negate() {
         if (this.isZero()) return ZERO;
-        return bnot().add(DataWord.ONE);
+        return fromLimbs(UInt256.negate(limbs()));
     }
 
     public DataWord bnot() {
-        if (this.isZero()) {
-            return new DataWord(ByteUtil.copyToArray(MAX_VALUE));
+        byte[] newData = this.copyData();
+        for (int i = 0; i < newData.length; ++i) {
+            newData[i] = (byte) ~newData[i];
         }
-        return new DataWord(ByteUtil.copyToArray(MAX_VALUE.subtract(this.value())));
+        return new DataWord(newData);
     }
 
-    // By   : Holger
-    // From : http://stackoverflow.com/a/24023466/459349
     public DataWord add(DataWord word) {
-        byte[] newData = new byte[32];
-        for (int i = 31, overflow = 0; i >= 0; i--) {
-            int v = (this.data[i] & 0xff) + (word.data[i] & 0xff) + overflow;
-            newData[i] = (byte) v;
-            overflow = v >>> 8;
-        }
-        return new DataWord(newData);
+        return fromLimbs(UInt256.add(limbs(), word.limbs()));
     }
 
     // old add-method with BigInteger quick hack
@@ -277,57 +292,43 @@ public final class DataWord implements Comparable<DataWord> {
         return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
     }
 
-    // TODO: mul can be done in more efficient way
-    // TODO:     with shift left shift right trick
-    // TODO      without BigInteger quick hack
     public DataWord mul(DataWord word) {
-        BigInteger result = value().multiply(word.value());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.mul(limbs(), word.limbs()));
     }
 
-    // TODO: improve with no BigInteger
     public DataWord div(DataWord word) {
 
         if (word.isZero()) {
             return ZERO;
         }
 
-        BigInteger result = value().divide(word.value());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.div(limbs(), word.limbs()));
     }
 
-    // TODO: improve with no BigInteger
     public DataWord sDiv(DataWord word) {
 
         if (word.isZero()) {
             return ZERO;
         }
 
-        BigInteger result = sValue().divide(word.sValue());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.sdiv(limbs(), word.limbs()));
     }
 
-    // TODO: improve with no BigInteger
     public DataWord sub(DataWord word) {
-        BigInteger result = value().subtract(word.value());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.sub(limbs(), word.limbs()));
     }
 
-    // TODO: improve with no BigInteger
     public DataWord exp(DataWord word) {
-        BigInteger newData = value().modPow(word.value(), _2_256);
-        return new DataWord(ByteUtil.copyToArray(newData));
+        return fromLimbs(UInt256.exp(limbs(), word.limbs()));
     }
 
-    // TODO: improve with no BigInteger
     public DataWord mod(DataWord word) {
 
         if (word.isZero()) {
             return ZERO;
         }
 
-        BigInteger result = value().mod(word.value());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.mod(limbs(), word.limbs()));
     }
 
     public DataWord sMod(DataWord word) {
@@ -336,10 +337,7 @@ public final class DataWord implements Comparable<DataWord> {
             return ZERO;
         }
 
-        BigInteger result = sValue().abs().mod(word.sValue().abs());
-        result = (sValue().signum() == -1) ? result.negate() : result;
-
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.smod(limbs(), word.limbs()));
     }
 
     public DataWord addmod(DataWord word1, DataWord word2) {
@@ -347,8 +345,7 @@ public final class DataWord implements Comparable<DataWord> {
             return ZERO;
         }
 
-        BigInteger result = value().add(word1.value()).mod(word2.value());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.addmod(limbs(), word1.limbs(), word2.limbs()));
     }
 
     public DataWord mulmod(DataWord word1, DataWord word2) {
@@ -357,8 +354,7 @@ public final class DataWord implements Comparable<DataWord> {
             return ZERO;
         }
 
-        BigInteger result = value().multiply(word1.value()).mod(word2.value());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.mulmod(limbs(), word1.limbs(), word2.limbs()));
     }
 
     /**
@@ -367,12 +363,12 @@ public final class DataWord implements Comparable<DataWord> {
      * @return this << arg
      */
     public DataWord shiftLeft(DataWord arg) {
-        if (arg.value().compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+        int n = UInt256.toIntCapped(arg.limbs(), MAX_POW);
+        if (n >= MAX_POW) {
             return DataWord.ZERO;
         }
-        
-        BigInteger result = value().shiftLeft(arg.intValueSafe());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+
+        return fromLimbs(UInt256.shiftLeft(limbs(), n));
     }
 
     /**
@@ -381,12 +377,12 @@ public final class DataWord implements Comparable<DataWord> {
      * @return this >> arg
      */
     public DataWord shiftRight(DataWord arg) {
-        if (arg.value().compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+        int n = UInt256.toIntCapped(arg.limbs(), MAX_POW);
+        if (n >= MAX_POW) {
             return DataWord.ZERO;
         }
 
-        BigInteger result = value().shiftRight(arg.intValueSafe());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.shiftRight(limbs(), n));
     }
 
     /**
@@ -395,7 +391,8 @@ public final class DataWord implements Comparable<DataWord> {
      * @return this >> arg
      */
     public DataWord shiftRightSigned(DataWord arg) {
-        if (arg.value().compareTo(BigInteger.valueOf(MAX_POW)) >= 0) {
+        int n = UInt256.toIntCapped(arg.limbs(), MAX_POW);
+        if (n >= MAX_POW) {
             if (this.isNegative()) {
                 return DataWord.ONE.negate();
             } else {
@@ -403,8 +400,20 @@ public final class DataWord implements Comparable<DataWord> {
             }
         }
 
-        BigInteger result = sValue().shiftRight(arg.intValueSafe());
-        return new DataWord(ByteUtil.copyToArray(result.and(MAX_VALUE)));
+        return fromLimbs(UInt256.shiftRightSigned(limbs(), n));
+    }
+
+    /**
+     * @return the value as four long limbs for {@link UInt256}, least significant first;
+     *         the array is shared by the word and must not be modified
+     */
+    long[] limbs() {
+        long[] ret = limbs;
+        if (ret == null) {
+            ret = UInt256.fromBytes(data);
+            limbs = ret;
+        }
+        return ret;
     }
 
     @JsonValue
@@ -457,12 +466,7 @@ public final class DataWord implements Comparable<DataWord> {
     public DataWord signExtend(byte k) {
         if (0 > k || k > 31)
             throw new IndexOutOfBoundsException();
-        byte mask = this.sValue().testBit((k * 8) + 7) ? (byte) 0xff : 0;
-        byte[] newData = this.copyData();
-        for (int i = 31; i > k; i--) {
-            newData[31 - i] = mask;
-        }
-        return new DataWord(newData);
+        return fromLimbs(UInt256.signExtend(limbs(), k));
     }
 
     public int bytesOccupied() {
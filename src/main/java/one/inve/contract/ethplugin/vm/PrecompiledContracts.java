@@ -18,6 +18,7 @@
 package one.inve.contract.ethplugin.vm;
 
 import one.inve.contract.ethplugin.config.BlockchainConfig;
+import one.inve.contract.ethplugin.config.SystemProperties;
 import one.inve.contract.ethplugin.crypto.ECKey;
 import one.inve.contract.ethplugin.crypto.HashUtil;
 import one.inve.contract.ethplugin.crypto.zksnark.*;
@@ -45,6 +46,13 @@ public class PrecompiledContracts {
     private static final BN128Multiplication altBN128Mul = new BN128Multiplication();
     private static final BN128Pairing altBN128Pairing = new BN128Pairing();
 
+    // null if the results are not cached
+    private static final PrecompiledResultCache resultCache = createResultCache();
+    private static final PrecompiledContract cachedEcRecover = cached(0x01, ecRecover);
+    private static final PrecompiledContract cachedModExp = cached(0x05, modExp);
+    private static final PrecompiledContract cachedAltBN128Mul = cached(0x07, altBN128Mul);
+    private static final PrecompiledContract cachedAltBN128Pairing = cached(0x08, altBN128Pairing);
+
     private static final DataWord ecRecoverAddr =       DataWord.of("0000000000000000000000000000000000000000000000000000000000000001");
     private static final DataWord sha256Addr =          DataWord.of("0000000000000000000000000000000000000000000000000000000000000002");
     private static final DataWord ripempd160Addr =      DataWord.of("0000000000000000000000000000000000000000000000000000000000000003");
@@ -57,20 +65,37 @@ public class PrecompiledContracts {
     public static PrecompiledContract getContractForAddress(DataWord address, BlockchainConfig config) {
 
         if (address == null) return identity;
-        if (address.equals(ecRecoverAddr)) return ecRecover;
+        if (address.equals(ecRecoverAddr)) return cachedEcRecover;
         if (address.equals(sha256Addr)) return sha256;
         if (address.equals(ripempd160Addr)) return ripempd160;
         if (address.equals(identityAddr)) return identity;
 
         // Byzantium precompiles
-        if (address.equals(modExpAddr) && config.eip198()) return modExp;
+        if (address.equals(modExpAddr) && config.eip198()) return cachedModExp;
         if (address.equals(altBN128AddAddr) && config.eip213()) return altBN128Add;
-        if (address.equals(altBN128MulAddr) && config.eip213()) return altBN128Mul;
-        if (address.equals(altBN128PairingAddr) && config.eip212()) return altBN128Pairing;
+        if (address.equals(altBN128MulAddr) && config.eip213()) return cachedAltBN128Mul;
+        if (address.equals(altBN128PairingAddr) && config.eip212()) return cachedAltBN128Pairing;
 
         return null;
     }
 
+    /**
+     * @return cache of the ECRecover, ModExp and BN128 multiplication and pairing results,
+     * null if disabled by {@code inve.vm.precompileCacheSize}
+     */
+    public static PrecompiledResultCache getResultCache() {
+        return resultCache;
+    }
+
+    private static PrecompiledResultCache createResultCache() {
+        int size = SystemProperties.getDefault().vmPrecompileCacheSize();
+        return size > 0 ? new PrecompiledResultCache(size) : null;
+    }
+
+    private static PrecompiledContract cached(int address, PrecompiledContract contract) {
+        return resultCache == null ? contract : resultCache.wrap((byte) address, contract);
+    }
+
     private static byte[] encodeRes(byte[] w1, byte[] w2) {
 
         byte[] res = new byte[64];
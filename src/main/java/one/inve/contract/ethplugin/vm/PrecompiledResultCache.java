@@ -0,0 +1,132 @@
+package one.inve.contract.ethplugin.vm;
+
+import one.inve.contract.ethplugin.crypto.HashUtil;
+import one.inve.contract.ethplugin.db.ByteArrayWrapper;
+import one.inve.contract.ethplugin.vm.PrecompiledContracts.PrecompiledContract;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of precompiled contract results.
+ *
+ * A result is keyed by the precompile address and the Keccak-256 hash of the input, so it only depends on the
+ * content of the call. Precompiles are pure functions of their input, hence a cached result is the same as a
+ * computed one. Gas is always taken from the wrapped contract, caching only saves the computation.
+ */
+public class PrecompiledResultCache {
+
+    // larger outputs (e.g. of ModExp with huge moduli) are not worth keeping
+    private static final int MAX_RESULT_SIZE = 1024;
+
+    private final int capacity;
+    private final LinkedHashMap<ByteArrayWrapper, Pair<Boolean, byte[]>> results;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PrecompiledResultCache(int capacity) {
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<ByteArrayWrapper, Pair<Boolean, byte[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Pair<Boolean, byte[]>> eldest) {
+                if (size() > PrecompiledResultCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return contract which has the gas of the given one and looks up its results in this cache first
+     */
+    public PrecompiledContract wrap(byte address, PrecompiledContract contract) {
+        return new CachedContract(address, contract);
+    }
+
+    private synchronized Pair<Boolean, byte[]> get(ByteArrayWrapper key) {
+        Pair<Boolean, byte[]> ret = results.get(key);
+        if (ret == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return ret;
+    }
+
+    private synchronized void put(ByteArrayWrapper key, Pair<Boolean, byte[]> result) {
+        results.put(key, result);
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PrecompiledResultCache[size: %d/%d, hits: %d, misses: %d, evictions: %d]",
+                results.size(), capacity, hits, misses, evictions);
+    }
+
+    private class CachedContract extends PrecompiledContract {
+
+        private final byte address;
+        private final PrecompiledContract contract;
+
+        CachedContract(byte address, PrecompiledContract contract) {
+            this.address = address;
+            this.contract = contract;
+        }
+
+        @Override
+        public long getGasForData(byte[] data) {
+            return contract.getGasForData(data);
+        }
+
+        @Override
+        public Pair<Boolean, byte[]> execute(byte[] data) {
+            // null input is handled differently by the contracts than an empty one
+            if (data == null) return contract.execute(null);
+
+            byte[] key = new byte[33];
+            key[0] = address;
+            System.arraycopy(HashUtil.sha3(data), 0, key, 1, 32);
+            ByteArrayWrapper wrapper = new ByteArrayWrapper(key);
+
+            Pair<Boolean, byte[]> ret = get(wrapper);
+            if (ret == null) {
+                ret = contract.execute(data);
+                if (ret.getRight() == null || ret.getRight().length > MAX_RESULT_SIZE) return ret;
+                put(wrapper, Pair.of(ret.getLeft(), ret.getRight().clone()));
+                return ret;
+            }
+            // callers own the returned output
+            return Pair.of(ret.getLeft(), ret.getRight().clone());
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package one.inve.contract.ethplugin.vm;
+
+/**
+ * Fixed-width 256-bit arithmetic on four long limbs, least significant limb first.
+ *
+ * Every operation works modulo 2^256 with the EVM semantics {@link DataWord} exposes: signed operations
+ * treat the words as two's complement numbers, division and modulo by zero give zero. Operands are never
+ * modified, each operation returns a new limb array. Division is Knuth's algorithm D on 32-bit digits.
+ */
+public final class UInt256 {
+
+    private static final long MASK_32 = 0xFFFFFFFFL;
+
+    private UInt256() {
+    }
+
+    /**
+     * @param data 32 bytes big-endian
+     */
+    public static long[] fromBytes(byte[] data) {
+        long[] ret = new long[4];
+        for (int i = 0; i < 4; i++) {
+            int off = 24 - 8 * i;
+            long v = 0;
+            for (int j = 0; j < 8; j++) {
+                v = (v << 8) | (data[off + j] & 0xFF);
+            }
+            ret[i] = v;
+        }
+        return ret;
+    }
+
+    /**
+     * @return 32 bytes big-endian
+     */
+    public static byte[] toBytes(long[] a) {
+        byte[] ret = new byte[32];
+        for (int i = 0; i < 4; i++) {
+            int off = 24 - 8 * i;
+            long v = a[i];
+            for (int j = 7; j >= 0; j--) {
+                ret[off + j] = (byte) v;
+                v >>>= 8;
+            }
+        }
+        return ret;
+    }
+
+    public static boolean isZero(long[] a) {
+        return (a[0] | a[1] | a[2] | a[3]) == 0;
+    }
+
+    public static boolean isNegative(long[] a) {
+        return a[3] < 0;
+    }
+
+    /**
+     * Unsigned comparison
+     */
+    public static int compare(long[] a, long[] b) {
+        for (int i = 3; i >= 0; i--) {
+            if (a[i] != b[i]) return Long.compareUnsigned(a[i], b[i]);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the value if it is below the limit, the limit otherwise
+     */
+    public static int toIntCapped(long[] a, int limit) {
+        if (a[1] != 0 || a[2] != 0 || a[3] != 0 || a[0] < 0 || a[0] >= limit) return limit;
+        return (int) a[0];
+    }
+
+    public static long[] add(long[] a, long[] b) {
+        long[] ret = new long[4];
+        long carry = 0;
+        for (int i = 0; i < 4; i++) {
+            long s = a[i] + b[i];
+            long c = Long.compareUnsigned(s, a[i]) < 0 ? 1 : 0;
+            long t = s + carry;
+            c += Long.compareUnsigned(t, s) < 0 ? 1 : 0;
+            ret[i] = t;
+            carry = c;
+        }
+        return ret;
+    }
+
+    public static long[] sub(long[] a, long[] b) {
+        long[] ret = new long[4];
+        long borrow = 0;
+        for (int i = 0; i < 4; i++) {
+            long d = a[i] - b[i];
+            long br = Long.compareUnsigned(a[i], b[i]) < 0 ? 1 : 0;
+            long t = d - borrow;
+            br += Long.compareUnsigned(d, borrow) < 0 ? 1 : 0;
+            ret[i] = t;
+            borrow = br;
+        }
+        return ret;
+    }
+
+    public static long[] not(long[] a) {
+        return new long[] {~a[0], ~a[1], ~a[2], ~a[3]};
+    }
+
+    public static long[] negate(long[] a) {
+        return sub(new long[4], a);
+    }
+
+    public static long[] mul(long[] a, long[] b) {
+        long[] ret = new long[4];
+        for (int i = 0; i < 4; i++) {
+            if (a[i] == 0) continue;
+            long carry = 0;
+            for (int j = 0; i + j < 4; j++) {
+                long lo = a[i] * b[j];
+                long hi = multiplyHighUnsigned(a[i], b[j]);
+                long s = ret[i + j] + lo;
+                if (Long.compareUnsigned(s, lo) < 0) hi++;
+                long t = s + carry;
+                if (Long.compareUnsigned(t, s) < 0) hi++;
+                ret[i + j] = t;
+                carry = hi;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return full 512-bit product in 8 limbs
+     */
+    static long[] mulFull(long[] a, long[] b) {
+        long[] ret = new long[8];
+        for (int i = 0; i < 4; i++) {
+            long carry = 0;
+            for (int j = 0; j < 4; j++) {
+                long lo = a[i] * b[j];
+                long hi = multiplyHighUnsigned(a[i], b[j]);
+                long s = ret[i + j] + lo;
+                if (Long.compareUnsigned(s, lo) < 0) hi++;
+                long t = s + carry;
+                if (Long.compareUnsigned(t, s) < 0) hi++;
+                ret[i + j] = t;
+                carry = hi;
+            }
+            ret[i + 4] = carry;
+        }
+        return ret;
+    }
+
+    private static long multiplyHighUnsigned(long x, long y) {
+        long x0 = x & MASK_32, x1 = x >>> 32;
+        long y0 = y & MASK_32, y1 = y >>> 32;
+        long p00 = x0 * y0, p01 = x0 * y1, p10 = x1 * y0, p11 = x1 * y1;
+        long mid = (p00 >>> 32) + (p01 & MASK_32) + (p10 & MASK_32);
+        return p11 + (p01 >>> 32) + (p10 >>> 32) + (mid >>> 32);
+    }
+
+    public static long[] div(long[] a, long[] b) {
+        if (isZero(b)) return new long[4];
+        return divMod(a, b, true);
+    }
+
+    public static long[] mod(long[] a, long[] b) {
+        if (isZero(b)) return new long[4];
+        return divMod(a, b, false);
+    }
+
+    public static long[] sdiv(long[] a, long[] b) {
+        if (isZero(b)) return new long[4];
+        boolean negA = isNegative(a), negB = isNegative(b);
+        long[] q = divMod(negA ? negate(a) : a, negB ? negate(b) : b, true);
+        return negA != negB ? negate(q) : q;
+    }
+
+    /**
+     * Sign of the result follows the dividend
+     */
+    public static long[] smod(long[] a, long[] b) {
+        if (isZero(b)) return new long[4];
+        boolean negA = isNegative(a);
+        long[] r = divMod(negA ? negate(a) : a, isNegative(b) ? negate(b) : b, false);
+        return negA ? negate(r) : r;
+    }
+
+    public static long[] addmod(long[] a, long[] b, long[] m) {
+        if (isZero(m)) return new long[4];
+        long[] sum = add(a, b);
+        long[] wide = new long[8];
+        System.arraycopy(sum, 0, wide, 0, 4);
+        // carry out of the 256-bit addition
+        if (compare(sum, a) < 0) wide[4] = 1;
+        return divMod(wide, m, false);
+    }
+
+    public static long[] mulmod(long[] a, long[] b, long[] m) {
+        if (isZero(m)) return new long[4];
+        return divMod(mulFull(a, b), m, false);
+    }
+
+    /**
+     * Square-and-multiply modulo 2^256
+     */
+    public static long[] exp(long[] base, long[] exponent) {
+        long[] ret = new long[] {1, 0, 0, 0};
+        int bits = bitLength(exponent);
+        long[] b = base;
+        for (int i = 0; i < bits; i++) {
+            if (((exponent[i >>> 6] >>> (i & 63)) & 1) != 0) ret = mul(ret, b);
+            if (i < bits - 1) b = mul(b, b);
+        }
+        return ret;
+    }
+
+    public static int bitLength(long[] a) {
+        for (int i = 3; i >= 0; i--) {
+            if (a[i] != 0) return i * 64 + 64 - Long.numberOfLeadingZeros(a[i]);
+        }
+        return 0;
+    }
+
+    public static long[] shiftLeft(long[] a, int n) {
+        long[] ret = new long[4];
+        if (n >= 256) return ret;
+        int limbs = n >>> 6, bits = n & 63;
+        for (int i = 3; i >= limbs; i--) {
+            long v = a[i - limbs] << bits;
+            if (bits != 0 && i - limbs - 1 >= 0) v |= a[i - limbs - 1] >>> (64 - bits);
+            ret[i] = v;
+        }
+        return ret;
+    }
+
+    public static long[] shiftRight(long[] a, int n) {
+        long[] ret = new long[4];
+        if (n >= 256) return ret;
+        int limbs = n >>> 6, bits = n & 63;
+        for (int i = 0; i + limbs < 4; i++) {
+            long v = a[i + limbs] >>> bits;
+            if (bits != 0 && i + limbs + 1 < 4) v |= a[i + limbs + 1] << (64 - bits);
+            ret[i] = v;
+        }
+        return ret;
+    }
+
+    public static long[] shiftRightSigned(long[] a, int n) {
+        boolean neg = isNegative(a);
+        if (n >= 256) return neg ? new long[] {-1, -1, -1, -1} : new long[4];
+        long[] ret = shiftRight(a, n);
+        if (neg && n > 0) {
+            // fill the vacated high bits with ones
+            long[] fill = shiftLeft(new long[] {-1, -1, -1, -1}, 256 - n);
+            for (int i = 0; i < 4; i++) ret[i] |= fill[i];
+        }
+        return ret;
+    }
+
+    /**
+     * Extends the sign of the (k + 1)-byte value held in the low bytes of a
+     */
+    public static long[] signExtend(long[] a, int k) {
+        int bit = k * 8 + 7;
+        int limb = bit >>> 6, pos = bit & 63;
+        boolean neg = ((a[limb] >>> pos) & 1) != 0;
+        long[] ret = a.clone();
+        long lowMask = pos == 63 ? -1L : (1L << (pos + 1)) - 1;
+        ret[limb] = neg ? ret[limb] | ~lowMask : ret[limb] & lowMask;
+        for (int i = limb + 1; i < 4; i++) ret[i] = neg ? -1 : 0;
+        return ret;
+    }
+
+    /**
+     * Unsigned division of a (4 or 8 limbs) by the non-zero 256-bit b
+     * @return 256-bit quotient (which must fit) or remainder
+     */
+    private static long[] divMod(long[] a, long[] b, boolean quotient) {
+        if (a.length == 4 && compare(a, b) < 0) return quotient ? new long[4] : a.clone();
+
+        int[] u = toDigits(a);
+        int[] v = toDigits(b);
+        int m = significantDigits(u);
+        int n = significantDigits(v);
+
+        int[] q = new int[Math.max(m - n + 1, 1)];
+        int[] r = new int[n];
+        if (m < n) {
+            System.arraycopy(u, 0, r, 0, m);
+        } else {
+            divmnu(q, r, u, v, m, n);
+        }
+        return quotient ? fromDigits(q) : fromDigits(r);
+    }
+
+    private static int[] toDigits(long[] a) {
+        int[] ret = new int[a.length * 2];
+        for (int i = 0; i < a.length; i++) {
+            ret[2 * i] = (int) a[i];
+            ret[2 * i + 1] = (int) (a[i] >>> 32);
+        }
+        return ret;
+    }
+
+    private static long[] fromDigits(int[] d) {
+        long[] ret = new long[4];
+        for (int i = 0; i < d.length && i < 8; i++) {
+            ret[i >>> 1] |= (d[i] & MASK_32) << ((i & 1) * 32);
+        }
+        return ret;
+    }
+
+    private static int significantDigits(int[] d) {
+        int n = d.length;
+        while (n > 0 && d[n - 1] == 0) n--;
+        return n;
+    }
+
+    /**
+     * Knuth's algorithm D (Hacker's Delight, divmnu): u of m digits by v of n digits, v[n - 1] != 0, m >= n
+     */
+    private static void divmnu(int[] q, int[] r, int[] u, int[] v, int m, int n) {
+        if (n == 1) {
+            long d = v[0] & MASK_32;
+            long k = 0;
+            for (int j = m - 1; j >= 0; j--) {
+                long cur = (k << 32) | (u[j] & MASK_32);
+                q[j] = (int) Long.divideUnsigned(cur, d);
+                k = Long.remainderUnsigned(cur, d);
+            }
+            r[0] = (int) k;
+            return;
+        }
+
+        // normalize so that the top digit of the divisor has its high bit set
+        int s = Integer.numberOfLeadingZeros(v[n - 1]);
+        int[] vn = new int[n];
+        for (int i = n - 1; i > 0; i--) {
+            vn[i] = (int) (((v[i] & MASK_32) << s) | ((v[i - 1] & MASK_32) >>> (32 - s)));
+        }
+        vn[0] = v[0] << s;
+
+        int[] un = new int[m + 1];
+        un[m] = (int) ((u[m - 1] & MASK_32) >>> (32 - s));
+        for (int i = m - 1; i > 0; i--) {
+            un[i] = (int) (((u[i] & MASK_32) << s) | ((u[i - 1] & MASK_32) >>> (32 - s)));
+        }
+        un[0] = u[0] << s;
+
+        long vTop = vn[n - 1] & MASK_32;
+        long vNext = vn[n - 2] & MASK_32;
+        for (int j = m - n; j >= 0; j--) {
+            long num = ((un[j + n] & MASK_32) << 32) | (un[j + n - 1] & MASK_32);
+            long qhat = Long.divideUnsigned(num, vTop);
+            long rhat = Long.remainderUnsigned(num, vTop);
+            while (qhat > MASK_32
+                    || Long.compareUnsigned(qhat * vNext, (rhat << 32) | (un[j + n - 2] & MASK_32)) > 0) {
+                qhat--;
+                rhat += vTop;
+                if (rhat > MASK_32) break;
+            }
+
+            // multiply and subtract
+            long k = 0;
+            long t;
+            for (int i = 0; i < n; i++) {
+                long p = qhat * (vn[i] & MASK_32);
+                t = (un[i + j] & MASK_32) - k - (p & MASK_32);
+                un[i + j] = (int) t;
+                k = (p >>> 32) - (t >> 32);
+            }
+            t = (un[j + n] & MASK_32) - k;
+            un[j + n] = (int) t;
+
+            q[j] = (int) qhat;
+            if (t < 0) {
+                // subtracted too much, add back
+                q[j]--;
+                k = 0;
+                for (int i = 0; i < n; i++) {
+                    t = (un[i + j] & MASK_32) + (vn[i] & MASK_32) + k;
+                    un[i + j] = (int) t;
+                    k = t >>> 32;
+                }
+                un[j + n] = (int) (un[j + n] + k);
+            }
+        }
+
+        // unnormalize the remainder
+        for (int i = 0; i < n; i++) {
+            r[i] = (int) (((un[i] & MASK_32) >>> s) | ((un[i + 1] & MASK_32) << (32 - s)));
+        }
+    }
+}
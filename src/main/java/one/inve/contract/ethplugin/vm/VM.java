@@ -1068,7 +1068,7 @@ public class VM {
                 case DUP13: case DUP14: case DUP15: case DUP16:{
 
                     int n = op.val() - OpCode.DUP1.val() + 1;
-                    DataWord word_1 = stack.get(stack.size() - n);
+                    DataWord word_1 = stack.peek(n);
                     program.stackPush(word_1);
                     program.step();
 
@@ -21,21 +21,28 @@ import one.inve.contract.ethplugin.vm.DataWord;
 import one.inve.contract.ethplugin.vm.program.listener.ProgramListener;
 import one.inve.contract.ethplugin.vm.program.listener.ProgramListenerAware;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static java.lang.Math.ceil;
-import static java.lang.Math.min;
+import static java.lang.Math.max;
 import static java.lang.String.format;
 import static one.inve.contract.ethplugin.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static one.inve.contract.ethplugin.util.ByteUtil.oneByteToHexString;
 
+/**
+ * Program memory kept in one contiguous array, so any address is reached in constant time and a range is
+ * copied with a single {@link System#arraycopy}. The array grows in {@value #CHUNK_SIZE} byte steps, at least
+ * doubling, while the visible size grows in 32 byte words as the EVM requires.
+ *
+ * Words and ranges can be read into and written from caller supplied arrays without intermediate copies.
+ */
 public class Memory implements ProgramListenerAware {
 
     private static final int CHUNK_SIZE = 1024;
     private static final int WORD_SIZE = 32;
 
-    private List<byte[]> chunks = new LinkedList<>();
+    private byte[] buffer = EMPTY_BYTE_ARRAY;
     private int softSize;
     private ProgramListener programListener;
 
@@ -48,27 +55,17 @@ public class Memory implements ProgramListenerAware {
         if (size <= 0) return EMPTY_BYTE_ARRAY;
 
         extend(address, size);
-        byte[] data = new byte[size];
-
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
-        int toGrab = data.length;
-        int start = 0;
-
-        while (toGrab > 0) {
-            int copied = grabMax(chunkIndex, chunkOffset, toGrab, data, start);
-
-            // read next chunk from the start
-            ++chunkIndex;
-            chunkOffset = 0;
+        return Arrays.copyOfRange(buffer, address, address + size);
+    }
 
-            // mark remind
-            toGrab -= copied;
-            start += copied;
-        }
+    /**
+     * Copies the memory range into the array, extending the memory like {@link #read(int, int)}
+     */
+    public void read(int address, byte[] dest, int destPos, int size) {
+        if (size <= 0) return;
 
-        return data;
+        extend(address, size);
+        System.arraycopy(buffer, address, dest, destPos, size);
     }
 
     public void write(int address, byte[] data, int dataSize, boolean limited) {
@@ -77,34 +74,39 @@ public class Memory implements ProgramListenerAware {
         if (data.length < dataSize)
             dataSize = data.length;
 
-        if (!limited)
-            extend(address, dataSize);
-
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
+        write(address, data, 0, dataSize, limited);
 
-        int toCapture = 0;
-        if (limited)
-            toCapture = (address + dataSize > softSize) ? softSize - address : dataSize;
-        else
-            toCapture = dataSize;
+        if (programListener != null) programListener.onMemoryWrite(address, data, dataSize);
+    }
 
-        int start = 0;
-        while (toCapture > 0) {
-            int captured = captureMax(chunkIndex, chunkOffset, toCapture, data, start);
+    /**
+     * Writes the range of the array, the program listener is not notified
+     *
+     * @param limited if true the memory is not extended and only the part of the data up to its size is written
+     */
+    public void write(int address, byte[] data, int dataPos, int dataSize, boolean limited) {
+        if (dataSize <= 0) return;
 
-            // capture next chunk
-            ++chunkIndex;
-            chunkOffset = 0;
+        if (data.length - dataPos < dataSize)
+            dataSize = data.length - dataPos;
 
-            // mark remind
-            toCapture -= captured;
-            start += captured;
+        int toCapture;
+        if (limited) {
+            toCapture = (address + dataSize > softSize) ? softSize - address : dataSize;
+        } else {
+            extend(address, dataSize);
+            toCapture = dataSize;
         }
 
-        if (programListener != null) programListener.onMemoryWrite(address, data, dataSize);
+        if (toCapture > 0) System.arraycopy(data, dataPos, buffer, address, toCapture);
     }
 
+    public void writeWord(int address, DataWord value) {
+        extend(address, WORD_SIZE);
+        value.copyTo(buffer, address);
+
+        if (programListener != null) programListener.onMemoryWrite(address, value.getData(), WORD_SIZE);
+    }
 
     public void extendAndWrite(int address, int allocSize, byte[] data) {
         extend(address, allocSize);
@@ -116,14 +118,14 @@ public class Memory implements ProgramListenerAware {
 
         final int newSize = address + size;
 
-        int toAllocate = newSize - internalSize();
-        if (toAllocate > 0) {
-            addChunks((int) ceil((double) toAllocate / CHUNK_SIZE));
+        if (newSize > buffer.length) {
+            int capacity = (newSize + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+            buffer = Arrays.copyOf(buffer, max(capacity, buffer.length * 2));
         }
 
-        toAllocate = newSize - softSize;
+        int toAllocate = newSize - softSize;
         if (toAllocate > 0) {
-            toAllocate = (int) ceil((double) toAllocate / WORD_SIZE) * WORD_SIZE;
+            toAllocate = (toAllocate + WORD_SIZE - 1) / WORD_SIZE * WORD_SIZE;
             softSize += toAllocate;
 
             if (programListener != null) programListener.onMemoryExtend(toAllocate);
@@ -131,18 +133,13 @@ public class Memory implements ProgramListenerAware {
     }
 
     public DataWord readWord(int address) {
-        return DataWord.of(read(address, 32));
+        extend(address, WORD_SIZE);
+        return DataWord.of(buffer, address);
     }
 
     // just access expecting all data valid
     public byte readByte(int address) {
-
-        int chunkIndex = address / CHUNK_SIZE;
-        int chunkOffset = address % CHUNK_SIZE;
-
-        byte[] chunk = chunks.get(chunkIndex);
-
-        return chunk[chunkOffset];
+        return buffer[address];
     }
 
     @Override
@@ -180,35 +177,17 @@ public class Memory implements ProgramListenerAware {
     }
 
     public int internalSize() {
-        return chunks.size() * CHUNK_SIZE;
+        return buffer.length;
     }
 
+    /**
+     * @return copies of the allocated memory in {@value #CHUNK_SIZE} byte chunks
+     */
     public List<byte[]> getChunks() {
-        return new LinkedList<>(chunks);
-    }
-
-    private int captureMax(int chunkIndex, int chunkOffset, int size, byte[] src, int srcPos) {
-
-        byte[] chunk = chunks.get(chunkIndex);
-        int toCapture = min(size, chunk.length - chunkOffset);
-
-        System.arraycopy(src, srcPos, chunk, chunkOffset, toCapture);
-        return toCapture;
-    }
-
-    private int grabMax(int chunkIndex, int chunkOffset, int size, byte[] dest, int destPos) {
-
-        byte[] chunk = chunks.get(chunkIndex);
-        int toGrab = min(size, chunk.length - chunkOffset);
-
-        System.arraycopy(chunk, chunkOffset, dest, destPos, toGrab);
-
-        return toGrab;
-    }
-
-    private void addChunks(int num) {
-        for (int i = 0; i < num; ++i) {
-            chunks.add(new byte[CHUNK_SIZE]);
+        List<byte[]> ret = new ArrayList<>(buffer.length / CHUNK_SIZE);
+        for (int i = 0; i < buffer.length; i += CHUNK_SIZE) {
+            ret.add(Arrays.copyOfRange(buffer, i, i + CHUNK_SIZE));
         }
+        return ret;
     }
 }
@@ -25,7 +25,7 @@ import one.inve.contract.ethplugin.core.Repository;
 import one.inve.contract.ethplugin.core.Transaction;
 import one.inve.contract.ethplugin.crypto.HashUtil;
 import one.inve.contract.ethplugin.db.ContractDetails;
-import one.inve.contract.ethplugin.util.ByteArraySet;
+import one.inve.contract.ethplugin.util.ByteArrayHashSet;
 import one.inve.contract.ethplugin.util.ByteUtil;
 import one.inve.contract.ethplugin.util.FastByteComparisons;
 import one.inve.contract.ethplugin.util.Utils;
@@ -104,7 +104,7 @@ public class Program {
     private byte lastOp;
     private byte previouslyExecutedOp;
     private boolean stopped;
-    private ByteArraySet touchedAccounts = new ByteArraySet();
+    private ByteArrayHashSet touchedAccounts = new ByteArrayHashSet();
 
     private ProgramPrecompile programPrecompile;
 
@@ -327,7 +327,7 @@ public class Program {
     }
 
     public void memorySave(DataWord addrB, DataWord value) {
-        memory.write(addrB.intValue(), value.getData(), value.getData().length, false);
+        memory.writeWord(addrB.intValue(), value);
     }
 
     public void memorySaveLimited(int addr, byte[] data, int dataSize) {
@@ -17,7 +17,7 @@
  */
 package one.inve.contract.ethplugin.vm.program;
 
-import one.inve.contract.ethplugin.util.ByteArraySet;
+import one.inve.contract.ethplugin.util.ByteArrayHashSet;
 import one.inve.contract.ethplugin.vm.CallCreate;
 import one.inve.contract.ethplugin.vm.DataWord;
 import one.inve.contract.ethplugin.vm.LogInfo;
@@ -43,7 +43,7 @@ public class ProgramResult {
     private boolean revert;
 
     private Set<DataWord> deleteAccounts;
-    private ByteArraySet touchedAccounts = new ByteArraySet();
+    private ByteArrayHashSet touchedAccounts = new ByteArrayHashSet();
     private List<InternalTransaction> internalTransactions;
     private List<LogInfo> logInfoList;
     private long futureRefund = 0;
@@ -21,8 +21,22 @@ import one.inve.contract.ethplugin.vm.DataWord;
 import one.inve.contract.ethplugin.vm.program.listener.ProgramListener;
 import one.inve.contract.ethplugin.vm.program.listener.ProgramListenerAware;
 
-public class Stack extends java.util.Stack<DataWord> implements ProgramListenerAware {
+import java.util.EmptyStackException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+/**
+ * EVM operand stack backed by a plain array of the maximum stack size.
+ *
+ * {@link DataWord} is immutable, so words are kept by reference: push, pop, peek, dup and swap
+ * neither copy nor allocate, and unlike {@link java.util.Stack} no operation takes a lock
+ */
+public class Stack implements ProgramListenerAware, Iterable<DataWord> {
+
+    public static final int MAX_SIZE = 1024;
+
+    private final DataWord[] words = new DataWord[MAX_SIZE];
+    private int size;
     private ProgramListener programListener;
 
     @Override
@@ -30,27 +44,90 @@ public class Stack extends java.util.Stack<DataWord> implements ProgramListenerA
         this.programListener = listener;
     }
 
-    @Override
-    public synchronized DataWord pop() {
+    public DataWord pop() {
+        if (size == 0) throw new EmptyStackException();
         if (programListener != null) programListener.onStackPop();
-        return super.pop();
+        DataWord item = words[--size];
+        words[size] = null;
+        return item;
     }
 
-    @Override
     public DataWord push(DataWord item) {
+        if (size == MAX_SIZE) throw new IllegalStateException("Stack overflow: " + MAX_SIZE + " elements");
         if (programListener != null) programListener.onStackPush(item);
-        return super.push(item);
+        words[size++] = item;
+        return item;
+    }
+
+    /**
+     * @return the top of the stack without removing it
+     */
+    public DataWord peek() {
+        if (size == 0) throw new EmptyStackException();
+        return words[size - 1];
+    }
+
+    /**
+     * @return the n-th word from the top, 1 being the top itself
+     */
+    public DataWord peek(int n) {
+        return get(size - n);
+    }
+
+    /**
+     * Pushes the n-th word from the top once more, 1 being the top itself
+     */
+    public DataWord dup(int n) {
+        return push(peek(n));
+    }
+
+    /**
+     * @param index position from the bottom of the stack
+     */
+    public DataWord get(int index) {
+        if (index < 0 || index >= size) throw new ArrayIndexOutOfBoundsException(index);
+        return words[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
     }
 
     public void swap(int from, int to) {
         if (isAccessible(from) && isAccessible(to) && (from != to)) {
             if (programListener != null) programListener.onStackSwap(from, to);
-            DataWord tmp = get(from);
-            set(from, set(to, tmp));
+            DataWord tmp = words[from];
+            words[from] = words[to];
+            words[to] = tmp;
         }
     }
 
     private boolean isAccessible(int from) {
         return from >= 0 && from < size();
     }
+
+    /**
+     * Iterates from the bottom to the top of the stack
+     */
+    @Override
+    public Iterator<DataWord> iterator() {
+        return new Iterator<DataWord>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public DataWord next() {
+                if (i >= size) throw new NoSuchElementException();
+                return words[i++];
+            }
+        };
+    }
 }
@@ -0,0 +1,170 @@
+package one.inve.contract.inve;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import one.inve.contract.conf.Config;
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.core.Transaction;
+import one.inve.contract.ethplugin.core.TransactionExecutionSummary;
+import one.inve.contract.ethplugin.db.BlockStoreDummy;
+import one.inve.contract.ethplugin.db.ReadSet;
+import one.inve.contract.ethplugin.db.ReadView;
+import one.inve.contract.ethplugin.db.RepositoryImpl;
+import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Optimistic parallel execution of a batch of transactions over one repository.
+ *
+ * Every transaction is first executed speculatively on its own track started with
+ * {@link RepositoryImpl#startTracking(ReadSet, ReadView)}, concurrently with the others. The tracks share a
+ * {@link ReadView} of the repository, so each value is read from the repository once per batch and the
+ * workers don't wait for each other on the repository lock. The tracks are then
+ * committed strictly in the batch order: a track whose recorded reads are still current is committed as is,
+ * otherwise it has observed a conflicting write of an earlier transaction and the transaction is executed
+ * again on the current state. Validation compares values rather than versions, so the resulting state and
+ * receipts are exactly the ones of serial execution.
+ *
+ * Every transaction pays its fee to the foundation account, which would make all of them conflict. Speculative
+ * executions therefore leave the fee out and it is credited when the track is committed; a transaction which
+ * reads the foundation account itself is executed again the usual way. Likewise the VM traces of speculative
+ * executions are kept back until the track is committed, so only the committed execution is traced.
+ *
+ * The worker pool is sized by {@code inve.execution.parallelism} when the first batch is executed,
+ * later changes of the setting are not picked up.
+ */
+public class INVEParallelTransactionExecutor {
+    private static final Logger logger = LoggerFactory.getLogger("contract");
+
+    private static final byte[] FOUNDATION = Config.FOUNDATION_ADDRESS.getBytes();
+
+    /**
+     * Executed and committed transaction of the batch
+     */
+    public static class Result {
+        private final INVETransactionExecutor executor;
+        private final TransactionExecutionSummary summary;
+        private final boolean reExecuted;
+
+        Result(INVETransactionExecutor executor, TransactionExecutionSummary summary, boolean reExecuted) {
+            this.executor = executor;
+            this.summary = summary;
+            this.reExecuted = reExecuted;
+        }
+
+        public INVETransactionExecutor getExecutor() {
+            return executor;
+        }
+
+        public TransactionExecutionSummary getSummary() {
+            return summary;
+        }
+
+        public boolean isReExecuted() {
+            return reExecuted;
+        }
+    }
+
+    private static class Speculation {
+        final ReadSet readSet = new ReadSet();
+        RepositoryImpl track;
+        Result result;
+    }
+
+    // created on first use, the daemon threads don't keep the JVM alive
+    private static class PoolHolder {
+        static final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, SystemProperties.getDefault().executionParallelism()),
+                new ThreadFactoryBuilder().setNameFormat("contract-exec-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Executes the transactions and commits their changes to the repository in the given order,
+     * the repository itself is not committed
+     *
+     * @return results in the order of txs
+     */
+    public static List<Result> execute(final RepositoryImpl repository, List<Transaction> txs) {
+        long start = System.currentTimeMillis();
+
+        final ReadView view = new ReadView();
+        List<Future<Speculation>> futures = new ArrayList<>(txs.size());
+        for (final Transaction tx : txs) {
+            futures.add(PoolHolder.pool.submit(() -> speculate(repository, view, tx)));
+        }
+
+        List<Result> results = new ArrayList<>(txs.size());
+        int reExecuted = 0;
+        for (int i = 0; i < txs.size(); i++) {
+            Speculation speculation;
+            try {
+                speculation = futures.get(i).get();
+            } catch (Exception e) {
+                // e.g. the transaction has read a half-done state, its serial execution decides
+                logger.debug("Speculative execution of tx {} failed, re-execute it", i, e);
+                speculation = null;
+            }
+
+            // earlier transactions are committed already, the valid reads are the ones serial execution would see
+            if (speculation != null && !speculation.readSet.hasAccount(FOUNDATION)
+                    && repository.isValid(speculation.readSet)) {
+                TransactionExecutionSummary summary = speculation.result.getSummary();
+                // the running speculations must not read the view in between
+                synchronized (repository) {
+                    view.invalidate(speculation.track);
+                    speculation.track.commit();
+                    if (summary != null) {
+                        repository.addBalance(FOUNDATION, summary.getFee());
+                        view.invalidateAccount(FOUNDATION);
+                    }
+                }
+                speculation.result.getExecutor().commitTrace();
+                results.add(speculation.result);
+            } else {
+                if (speculation != null) speculation.result.getExecutor().discardTrace();
+                INVETransactionExecutor executor;
+                TransactionExecutionSummary summary;
+                // a plain track reads the repository directly, the running speculations read it under its lock too
+                synchronized (repository) {
+                    RepositoryImpl track = repository.startTracking();
+                    executor = newExecutor(txs.get(i), track);
+                    summary = run(executor);
+                    view.invalidate(track);
+                    track.commit();
+                }
+                results.add(new Result(executor, summary, true));
+                reExecuted++;
+            }
+        }
+
+        logger.debug("Parallel execution of {} transactions: {} re-executed, {} ms", txs.size(), reExecuted,
+                System.currentTimeMillis() - start);
+        return results;
+    }
+
+    private static Speculation speculate(RepositoryImpl repository, ReadView view, Transaction tx) {
+        Speculation speculation = new Speculation();
+        speculation.track = repository.startTracking(speculation.readSet, view);
+        INVETransactionExecutor executor = newExecutor(tx, speculation.track).setDeferFee(true).setDeferTrace(true);
+        speculation.result = new Result(executor, run(executor), false);
+        return speculation;
+    }
+
+    private static INVETransactionExecutor newExecutor(Transaction tx, RepositoryImpl track) {
+        return new INVETransactionExecutor(tx, track, new BlockStoreDummy(),
+                new INVEProgramInvokeFactoryImpl(), SystemProperties.getDefault().getGenesis());
+    }
+
+    private static TransactionExecutionSummary run(INVETransactionExecutor executor) {
+        executor.init();
+        executor.execute();
+        executor.go();
+        return executor.finalization();
+    }
+}
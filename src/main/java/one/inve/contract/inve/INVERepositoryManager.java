@@ -12,43 +12,45 @@ import org.spongycastle.util.encoders.Hex;
 import java.io.File;
 import java.io.FileInputStream;
 import java.nio.file.Files;
-import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 public class INVERepositoryManager {
     private static final Logger logger = LoggerFactory.getLogger("contract");
-    private static HashMap<String, DbSource<byte[]>> dsMap = new HashMap<>();
+    private static ConcurrentHashMap<String, DbSource<byte[]>> dsMap = new ConcurrentHashMap<>();
     public static INVERepositoryRoot repoRoot;
 
     public static INVERepositoryRoot getRepoRoot(String dbId) {
-        String dbPath = PathUtils.getDataFileDir();
-        String cfgDir = dbPath + "configdata/";
-        return getRepoRoot(cfgDir, dbPath, dbId);
+        return getRepoRoot(defaultCfgDir(), PathUtils.getDataFileDir(), dbId);
+    }
+
+    private static String defaultCfgDir() {
+        return PathUtils.getDataFileDir() + "configdata/";
     }
 
     public static INVERepositoryRoot getRepoRoot(String cfgDir, String dbPath, String dbId) {
         
-        DbSource<byte[]> stateDS = dsMap.get(dbId + "state");
-        if(stateDS == null) {
-            stateDS = blockchainDB(dbPath, dbId + "state");
-            dsMap.put(dbId + "state", stateDS);
+        DbSource<byte[]> stateDS = dsMap.computeIfAbsent(dbId + "state", name -> blockchainDB(dbPath, name));
+        DbSource<byte[]> receiptDS = dsMap.computeIfAbsent(dbId + "receipt", name -> blockchainDB(dbPath, name));
+
+        // roothash 与状态数据一同保存在 state 数据库中
+        byte[] root = INVERepositoryRoot.loadRoot(stateDS);
+        if (root == null) {
+            root = loadLegacyRoot(cfgDir, dbId);
+        } else {
+            logger.debug("root hash found, ready to set root: {}", root);
         }
+        return new INVERepositoryRoot(stateDS, receiptDS, root);
+    }
 
-        DbSource<byte[]> receiptDS = dsMap.get(dbId + "receipt");
-        if(receiptDS == null) {
-            receiptDS = blockchainDB(dbPath, dbId + "receipt");
-            dsMap.put(dbId + "receipt", stateDS);
-        }
+    /**
+     * 兼容旧版本：从 root.cfg 中读取 roothash，下一次提交后 roothash 即写入 state 数据库
+     */
+    private static byte[] loadLegacyRoot(String cfgDir, String dbId) {
         byte[] root = null;
         try {
-            //创建目录
-            File dir = new File(cfgDir);
-            if(!dir.exists()) {
-                dir.mkdirs();
-            }
-            
             File file = new File(cfgDir + dbId + "root.cfg");
 
             logger.debug("file path of root is: {}", file.getAbsolutePath());
@@ -61,21 +63,55 @@ public class INVERepositoryManager {
                 String rootHash = properties.getProperty("roothash");
                 if(rootHash != null && rootHash.length() > 0) {
                     root = Hex.decode(rootHash);
-                    logger.debug("root hash found, ready to set root: {}", root);
+                    logger.debug("legacy root hash found, ready to set root: {}", root);
                 }
             }
         } catch (Exception e) {
             logger.error("Failed to getRepoRoot!", e);
         }
-        return new INVERepositoryRoot(stateDS, receiptDS, root);
+        return root;
+    }
+
+    /**
+     * 关闭指定数据库并释放 RocksDB 句柄，下次 getRepoRoot 时重新打开
+     * @param dbId
+     */
+    public static void closeDB(String dbId) {
+        closeDataSource(dbId + "state");
+        closeDataSource(dbId + "receipt");
+    }
+
+    private static void closeDataSource(String name) {
+        DbSource<byte[]> ds = dsMap.remove(name);
+        if (ds != null) {
+            ds.close();
+        }
     }
 
     public static void backupDB(String dbId) {
-        repoRoot = getRepoRoot(dbId);
-        synchronized (repoRoot) {
-            INVERepositoryManager repoManager = new INVERepositoryManager();
-            repoManager.backupDB(dbId, "state");
-            repoManager.backupDB(dbId, "receipt");
+        repoRoot = INVERepositoryRegistry.acquire(dbId);
+        try {
+            synchronized (repoRoot) {
+                migrateLegacyRoot(dbId);
+                INVERepositoryManager repoManager = new INVERepositoryManager();
+                repoManager.backupDB(dbId, "state");
+                repoManager.backupDB(dbId, "receipt");
+            }
+        } finally {
+            INVERepositoryRegistry.release(dbId);
+        }
+    }
+
+    /**
+     * 旧版本数据库中没有 roothash 时，将 root.cfg 中的 roothash 写入 state 数据库，保证备份包含自身的 roothash
+     */
+    private static void migrateLegacyRoot(String dbId) {
+        DbSource<byte[]> stateDS = dsMap.get(dbId + "state");
+        if (stateDS == null || INVERepositoryRoot.loadRoot(stateDS) != null) return;
+        byte[] root = loadLegacyRoot(defaultCfgDir(), dbId);
+        if (root != null) {
+            stateDS.put(INVERepositoryRoot.ROOT_KEY, root);
+            logger.info("legacy root hash of {} written to the state database", dbId);
         }
     }
 
@@ -88,23 +124,11 @@ public class INVERepositoryManager {
 
     private void backupDB(String dbId, String name) {
         try {
-            if (name.equals("state")) {
-                File from = new File("configdata/" + dbId + "root.cfg");
-                File to = new File("configdata/" + dbId + "root_bak.cfg");
-                if (from.exists()) {
-                    Files.copy(from.toPath(), to.toPath(), REPLACE_EXISTING);
-                }
-                DbSource<byte[]> stateDS = dsMap.get(dbId + "state");
-                if(stateDS != null){
-                    INVERocksDbDataSource rd = (INVERocksDbDataSource)stateDS;
-                    rd.backup();
-                }
-            }else if(name.equals("receipt")) {
-                DbSource<byte[]> receiptDS = dsMap.get(dbId + "receipt");
-                if(receiptDS != null) {
-                    INVERocksDbDataSource rd = (INVERocksDbDataSource)receiptDS;
-                    rd.backup();
-                }
+            // roothash 保存在 state 数据库中，随数据库一起备份
+            DbSource<byte[]> ds = dsMap.get(dbId + name);
+            if(ds != null) {
+                INVERocksDbDataSource rd = (INVERocksDbDataSource)ds;
+                rd.backup();
             }
         } catch (Exception e) {
             logger.error("backup database of {} failed.", name, e);
@@ -117,16 +141,17 @@ public class INVERepositoryManager {
                 .withMaxThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
         INVERocksDbDataSource rds = new INVERocksDbDataSource();
         try {
-            if(name.equals("state")) {  //只有state的数据库牵涉到了 root.cfg
-                File from = new File("configdata/" + dbId + "root_bak.cfg");
-                File to = new File("configdata/" + dbId + "root.cfg");
+            rds.setName(dbId + name);
+            rds.allowRestore();
+            rds.init(settings);
+            if (name.equals("state") && INVERepositoryRoot.loadRoot(rds) == null) {
+                // 旧版本的备份不含 roothash，恢复备份时的 root.cfg
+                File from = new File(defaultCfgDir() + dbId + "root_bak.cfg");
+                File to = new File(defaultCfgDir() + dbId + "root.cfg");
                 if (from.exists()) {
                     Files.copy(from.toPath(), to.toPath(), REPLACE_EXISTING);
                 }
             }
-            rds.setName(dbId + name);
-            rds.allowRestore();
-            rds.init(settings);
         } catch (Exception e) {
             logger.error("restore database of {} failed.", name, e);
         };
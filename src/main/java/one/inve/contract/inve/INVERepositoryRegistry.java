@@ -0,0 +1,185 @@
+package one.inve.contract.inve;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import one.inve.contract.ethplugin.config.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe registry of the {@link INVERepositoryRoot} instances hosted in this JVM, one per shard (dbId).
+ *
+ * Shards are opened lazily under a per-shard lock, so concurrent first accesses to the same dbId open its
+ * databases once while different shards open in parallel. Callers which keep a repository across several
+ * operations {@link #acquire(String)} and {@link #release(String)} it; when
+ * {@code inve.repository.idleCloseTimeout} is set, shards without references, without uncommitted changes
+ * and unused for that long are closed to release their RocksDB handles and are reopened on next access.
+ * A shard once handed out by {@link #get(String)} is never closed, as its caller may keep the repository.
+ */
+public class INVERepositoryRegistry {
+    private static final Logger logger = LoggerFactory.getLogger("contract");
+
+    private static class Shard {
+        final String dbId;
+        INVERepositoryRoot repo;
+        int refCount;
+        // handed out without a reference, the repository may be in use at any time
+        boolean unreferenced;
+        long lastAccess;
+
+        Shard(String dbId) {
+            this.dbId = dbId;
+        }
+    }
+
+    // shards are never removed from the map, only their repositories are closed,
+    // so a thread waiting on a shard lock never ends up with a detached shard
+    private static final ConcurrentHashMap<String, Shard> shards = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger openShards = new AtomicInteger();
+    private static final AtomicLong openCount = new AtomicLong();
+    private static final AtomicLong openTimeNanos = new AtomicLong();
+    private static final AtomicLong maxOpenTimeNanos = new AtomicLong();
+    private static final AtomicLong idleCloseCount = new AtomicLong();
+
+    private static ScheduledExecutorService idleCloser;
+
+    /**
+     * Returns the repository of the shard opening it if needed, without holding a reference.
+     * The shard is not idle closed from then on, prefer {@link #acquire(String)}
+     */
+    public static INVERepositoryRoot get(String dbId) {
+        return get(null, null, dbId);
+    }
+
+    /**
+     * Same as {@link #get(String)} but opens the shard from the given root.cfg directory and database path
+     */
+    public static INVERepositoryRoot get(String cfgDir, String dbPath, String dbId) {
+        Shard shard = shards.computeIfAbsent(dbId, Shard::new);
+        synchronized (shard) {
+            open(shard, cfgDir, dbPath);
+            shard.unreferenced = true;
+            shard.lastAccess = System.currentTimeMillis();
+            return shard.repo;
+        }
+    }
+
+    /**
+     * Returns the repository of the shard and holds a reference to it, the shard is not closed
+     * until the reference is given back with {@link #release(String)}
+     */
+    public static INVERepositoryRoot acquire(String dbId) {
+        return acquire(null, null, dbId);
+    }
+
+    public static INVERepositoryRoot acquire(String cfgDir, String dbPath, String dbId) {
+        Shard shard = shards.computeIfAbsent(dbId, Shard::new);
+        synchronized (shard) {
+            open(shard, cfgDir, dbPath);
+            shard.refCount++;
+            shard.lastAccess = System.currentTimeMillis();
+            return shard.repo;
+        }
+    }
+
+    public static void release(String dbId) {
+        Shard shard = shards.get(dbId);
+        if (shard == null) return;
+        synchronized (shard) {
+            if (shard.refCount > 0) {
+                shard.refCount--;
+            } else {
+                logger.warn("Repository shard {} released more times than acquired", dbId);
+            }
+            shard.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private static void open(Shard shard, String cfgDir, String dbPath) {
+        if (shard.repo != null) return;
+
+        long start = System.nanoTime();
+        shard.repo = cfgDir == null ? INVERepositoryManager.getRepoRoot(shard.dbId) :
+                INVERepositoryManager.getRepoRoot(cfgDir, dbPath, shard.dbId);
+        long time = System.nanoTime() - start;
+
+        openShards.incrementAndGet();
+        openCount.incrementAndGet();
+        openTimeNanos.addAndGet(time);
+        maxOpenTimeNanos.accumulateAndGet(time, Math::max);
+        logger.info("Repository shard {} opened in {} ms, open shards: {}", shard.dbId,
+                TimeUnit.NANOSECONDS.toMillis(time), openShards.get());
+
+        startIdleCloser();
+    }
+
+    private static synchronized void startIdleCloser() {
+        if (idleCloser != null) return;
+
+        int timeout = SystemProperties.getDefault().repositoryIdleCloseTimeout();
+        if (timeout <= 0) return;
+
+        idleCloser = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("repository-idle-closer-%d").setDaemon(true).build());
+        long period = Math.max(1, timeout / 2);
+        idleCloser.scheduleWithFixedDelay(() -> closeIdle(TimeUnit.SECONDS.toMillis(timeout)),
+                period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Closes every shard which has no references, has never been handed out by {@link #get(String)},
+     * has no uncommitted changes and has not been accessed during the last idleMillis
+     */
+    public static void closeIdle(long idleMillis) {
+        long now = System.currentTimeMillis();
+        for (Shard shard : shards.values()) {
+            synchronized (shard) {
+                if (shard.repo == null || shard.refCount > 0 || shard.unreferenced) continue;
+                if (now - shard.lastAccess < idleMillis) continue;
+                if (shard.repo.hasPendingChanges()) {
+                    logger.debug("Repository shard {} is idle but has uncommitted changes, keep it open", shard.dbId);
+                    continue;
+                }
+                try {
+                    INVERepositoryManager.closeDB(shard.dbId);
+                    shard.repo.releaseNodeCache();
+                    shard.repo = null;
+                    openShards.decrementAndGet();
+                    idleCloseCount.incrementAndGet();
+                    logger.info("Repository shard {} closed after {} ms idle, open shards: {}", shard.dbId,
+                            now - shard.lastAccess, openShards.get());
+                } catch (Exception e) {
+                    logger.error("Failed to close idle repository shard {}", shard.dbId, e);
+                }
+            }
+        }
+    }
+
+    public static int getOpenShardCount() {
+        return openShards.get();
+    }
+
+    public static long getOpenCount() {
+        return openCount.get();
+    }
+
+    public static long getIdleCloseCount() {
+        return idleCloseCount.get();
+    }
+
+    public static long getAverageOpenLatencyMillis() {
+        long count = openCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(openTimeNanos.get() / count);
+    }
+
+    public static long getMaxOpenLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxOpenTimeNanos.get());
+    }
+}
@@ -1,54 +1,169 @@
 package one.inve.contract.inve;
 
+import one.inve.contract.ethplugin.config.SystemProperties;
 import one.inve.contract.ethplugin.core.AccountState;
 import one.inve.contract.ethplugin.core.Repository;
 import one.inve.contract.ethplugin.datasource.*;
+import one.inve.contract.ethplugin.db.ByteArrayWrapper;
 import one.inve.contract.ethplugin.db.RepositoryImpl;
 import one.inve.contract.ethplugin.trie.SecureTrie;
 import one.inve.contract.ethplugin.trie.Trie;
 import one.inve.contract.ethplugin.trie.TrieImpl;
+import one.inve.contract.ethplugin.util.ByteArrayHashMap;
 import one.inve.contract.ethplugin.vm.DataWord;
-import one.inve.contract.util.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.util.Properties;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static one.inve.contract.ethplugin.util.ByteUtil.toHexString;
 
 public class INVERepositoryRoot extends RepositoryImpl {
     private static final Logger logger = LoggerFactory.getLogger("contract");
     
-    private static class StorageCache extends ReadWriteCache<DataWord, DataWord> {
+    private class StorageCache extends ReadWriteCache<DataWord, DataWord> {
+        final byte[] address;
         Trie<byte[]> trie;
+        // rows have been written to the trie and hashed before flushChild()
+        boolean hashed;
 
-        public StorageCache(Trie<byte[]> trie) {
+        public StorageCache(byte[] address, Trie<byte[]> trie) {
             super(new SourceCodec<>(trie, Serializers.StorageKeySerializer, Serializers.StorageValueSerializer), WriteCache.CacheType.SIMPLE);
+            this.address = address;
             this.trie = trie;
         }
+
+        @Override
+        public void put(DataWord key, DataWord val) {
+            super.put(key, val);
+            storageModified(address);
+        }
+
+        @Override
+        public void delete(DataWord key) {
+            super.delete(key);
+            storageModified(address);
+        }
     }
     private class MultiStorageCache extends MultiCache<StorageCache> {
         public MultiStorageCache() {
             super(null);
         }
+
+        @Override
+        public synchronized void delete(byte[] key) {
+            super.delete(key);
+            storageModified(key);
+        }
+
+        /**
+         * Unlike {@link MultiCache#flushImpl()} visits only the contracts whose storage has been written
+         * or deleted since the last flush instead of every contract ever modified
+         */
+        @Override
+        public synchronized boolean flushImpl() {
+            List<StorageCache> dirty = new ArrayList<>();
+            List<byte[]> deleted = new ArrayList<>();
+            for (ByteArrayWrapper key : modifiedStorage) {
+                modifiedStorage.remove(key);
+                AbstractCachedSource.Entry<StorageCache> entry = getCached(key.getData());
+                if (entry == null) continue;
+                if (entry.value() == null) {
+                    deleted.add(key.getData());
+                } else {
+                    dirty.add(entry.value());
+                }
+            }
+
+            hashStorageTries(dirty);
+            boolean ret = false;
+            for (byte[] key : deleted) {
+                ret |= flushChild(key, null);
+            }
+            for (StorageCache child : dirty) {
+                ret |= flushChild(child.address, child);
+            }
+            return ret;
+        }
+
+        @Override
+        public boolean hasModified() {
+            return !modifiedStorage.isEmpty();
+        }
+
+        /**
+         * Writes the modified rows of every contract to its storage trie and hashes the tries in parallel.
+         * The tries only share trieCache, which is thread-safe; the account roots are then updated
+         * one by one in flushChild()
+         */
+        private void hashStorageTries(List<StorageCache> children) {
+            storageHashCount = 0;
+            storageHashNanos = 0;
+            if (HashingPool.threads <= 1) return;
+
+            List<StorageCache> dirty = new ArrayList<>();
+            for (StorageCache child : children) {
+                if (child.hasModified()) {
+                    dirty.add(child);
+                }
+            }
+            if (dirty.size() < 2) return;
+
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(dirty.size());
+            for (final StorageCache child : dirty) {
+                futures.add(HashingPool.pool.submit(() -> {
+                    child.hashed = child.flush();
+                    child.trie.flush();
+                }));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                logger.error("Storage trie hashing failed", e.getCause());
+                throw new RuntimeException(e.getCause());
+            }
+            storageHashCount = dirty.size();
+            storageHashNanos = System.nanoTime() - start;
+        }
         @Override
         protected synchronized StorageCache create(byte[] key, StorageCache srcCache) {
             AccountState accountState = accountStateCache.get(key);
             Serializer<byte[], byte[]> keyCompositor = new NodeKeyCompositor(key);
             Source<byte[], byte[]> composingSrc = new SourceCodec.KeyOnly<>(trieCache, keyCompositor);
             TrieImpl storageTrie = createTrie(composingSrc, accountState == null ? null : accountState.getStateRoot());
-            return new StorageCache(storageTrie);
+            storageTrie.setReleaseOnFlush(false);
+            return new StorageCache(key, storageTrie);
         }
 
         @Override
         protected synchronized boolean flushChild(byte[] key, StorageCache childCache) {
-            if (super.flushChild(key, childCache)) {
+            boolean hashed = childCache != null && childCache.hashed;
+            if (hashed) {
+                childCache.hashed = false;
+            }
+            if (super.flushChild(key, childCache) || hashed) {
                 if (childCache != null) {
                     AccountState storageOwnerAcct = accountStateCache.get(key);
                     // need to update account storage root
                     childCache.trie.flush();
+                    flushedStorage.add(childCache);
                     byte[] rootHash = childCache.trie.getRootHash();
                     accountStateCache.put(key, storageOwnerAcct.withStateRoot(rootHash));
                     return true;
@@ -62,104 +177,289 @@ public class INVERepositoryRoot extends RepositoryImpl {
             }
         }
     }
+    /**
+     * Reserved key under which the committed state root is kept in the state database. It is written in
+     * the same batch as the trie nodes and code it refers to, so the stored root is never ahead of them
+     */
+    public static final byte[] ROOT_KEY = "inve.state.root.hash".getBytes(StandardCharsets.UTF_8);
+
     private Source<byte[], byte[]> stateDS;
     private Source<byte[], byte[]> receiptDS;
+    private AdaptiveReadCache nodeCache;
+    // megabytes of the node cache budget reserved by this root, 0 if the cache is shared or disabled
+    private long nodeCacheReserved;
+    private Source<byte[], byte[]> stateBatch;
+    private Source<byte[], byte[]> receiptBatch;
     private CachedSource.BytesKey<byte[]> trieCache;
     private Trie<byte[]> stateTrie;
     private Source<byte[], byte[]> receiptCache;
+    private volatile byte[] committedRoot;
+
+    // root returned by the last getRoot() or commit and whether the state has been written since then
+    private byte[] stateRoot;
+    private volatile boolean stateModified = true;
+    // contracts whose storage has been written or deleted since the last storage flush
+    private final Set<ByteArrayWrapper> modifiedStorage = ConcurrentHashMap.newKeySet();
+    // storage tries flushed since the last commit which keep their decoded nodes
+    private final Set<StorageCache> flushedStorage = new HashSet<>();
+
+    // shared by all repositories, sized once from inve.repository.hashingThreads on the first parallel flush
+    private static class HashingPool {
+        static final int threads = SystemProperties.getDefault().repositoryHashingThreads();
+        static final ExecutorService pool = threads > 1 ? Executors.newWorkStealingPool(threads) : null;
+    }
+    // megabytes of node cache held by the open shards, bounded by inve.repository.nodeCacheTotalSize
+    private static final AtomicLong nodeCacheTotal = new AtomicLong();
+
+    // storage tries hashed in parallel by the last flush
+    private int storageHashCount;
+    private long storageHashNanos;
 
     /**
      * Building the following structure for snapshot Repository:
      *
-     * stateDS --> trieCache --> stateTrie --> accountStateCodec --> accountStateCache
-     *  \                 \
-     *   \                 \-->>> storageKeyCompositor --> contractStorageTrie --> storageCodec --> storageCache
-     *    \--> codeCache
+     * stateDS --> nodeCache --> stateBatch --> trieCache --> stateTrie --> accountStateCodec --> accountStateCache
+     *                 \                 \
+     *                  \                 \-->>> storageKeyCompositor --> contractStorageTrie --> storageCodec --> storageCache
+     *                   \--> codeCache
+     *
+     * receiptDS --> receiptBatch --> receiptCache
+     *
+     * stateBatch and receiptBatch buffer everything flushed into them and write it with a single
+     * {@link BatchSource#updateBatch(java.util.Map)} call on commit
+     *
+     * nodeCache keeps the most used trie nodes and code of a RocksDB state database in memory, bounded by
+     * {@code inve.repository.nodeCacheSize} per shard and {@code inve.repository.nodeCacheTotalSize} for all
+     * shards, and off the Java heap with {@code inve.repository.nodeCacheOffHeap}; committed nodes pass through
+     * it and stay cached, snapshots share it
+     *
+     * getRoot() hashes the state incrementally: only contracts with written storage are flushed, the tries keep
+     * their decoded nodes and the hashes of clean subtrees until the commit, and the root is reused as long as
+     * no account or storage row is written
      *
      *
      * @param stateDS
      * @param root
      */
     public INVERepositoryRoot(final Source<byte[], byte[]> stateDS, final Source<byte[], byte[]> receiptDS, byte[] root) {
+        this(stateDS, receiptDS, root, null);
+    }
+
+    // snapshots read through the node cache of their repository
+    private INVERepositoryRoot(final Source<byte[], byte[]> stateDS, final Source<byte[], byte[]> receiptDS, byte[] root,
+                               AdaptiveReadCache sharedNodeCache) {
         this.stateDS = stateDS;
         this.receiptDS = receiptDS;
-        trieCache = new WriteCache.BytesKey<>(stateDS, WriteCache.CacheType.COUNTING);
-        stateTrie = new SecureTrie(trieCache, root);
+        if (sharedNodeCache != null) {
+            this.nodeCache = sharedNodeCache;
+        } else if (stateDS instanceof INVERocksDbDataSource) {
+            this.nodeCacheReserved = reserveNodeCache();
+            if (nodeCacheReserved > 0) {
+                this.nodeCache = new AdaptiveReadCache(stateDS, nodeCacheReserved << 20);
+                if (SystemProperties.getDefault().repositoryNodeCacheOffHeap()) {
+                    nodeCache.withOffHeapStorage();
+                }
+            }
+        }
+        this.stateBatch = batchWriter(nodeCache == null ? stateDS : nodeCache);
+        this.receiptBatch = batchWriter(receiptDS);
+        trieCache = new WriteCache.BytesKey<>(stateBatch, WriteCache.CacheType.COUNTING);
+        TrieImpl stateTrie = new SecureTrie(trieCache, root);
+        stateTrie.setReleaseOnFlush(false);
+        this.stateTrie = stateTrie;
 
         SourceCodec.BytesKey<AccountState, byte[]> accountStateCodec = new SourceCodec.BytesKey<>(stateTrie, Serializers.AccountStateSerializer);
-        final ReadWriteCache.BytesKey<AccountState> accountStateCache = new ReadWriteCache.BytesKey<>(accountStateCodec, WriteCache.CacheType.SIMPLE);
+        final ReadWriteCache.BytesKey<AccountState> accountStateCache = new ReadWriteCache.BytesKey<AccountState>(accountStateCodec, WriteCache.CacheType.SIMPLE) {
+            @Override
+            public void put(byte[] key, AccountState val) {
+                super.put(key, val);
+                stateModified = true;
+            }
+
+            @Override
+            public void delete(byte[] key) {
+                super.delete(key);
+                stateModified = true;
+            }
+        };
         final MultiCache<StorageCache> storageCache = new MultiStorageCache();
 
         // counting as there can be 2 contracts with the same code, 1 can suicide
-        Source<byte[], byte[]> codeCache = new WriteCache.BytesKey<>(stateDS, WriteCache.CacheType.COUNTING);
+        Source<byte[], byte[]> codeCache = new WriteCache.BytesKey<>(stateBatch, WriteCache.CacheType.COUNTING);
         init(accountStateCache, codeCache, storageCache);
 
-        this.receiptCache = new WriteCache.BytesKey<>(receiptDS, WriteCache.CacheType.COUNTING);
+        this.receiptCache = new WriteCache.BytesKey<>(receiptBatch, WriteCache.CacheType.COUNTING);
+        this.committedRoot = stateTrie.getRootHash();
     }
 
     public synchronized void commit(String dbId) {
+        byte[] root = persist();
+        logger.debug("State root updated: {}", toHexString(root));
+    }
+
+    /**
+     * 更新指定数据库，roothash 与状态数据一同原子写入数据库，不再写 root.cfg
+     * @param cfgDir 保留参数，兼容旧接口
+     * @param dbId
+     */
+    public synchronized void commit(String cfgDir, String dbId) {
+        byte[] root = persist();
+        logger.info("State root updated: {}", toHexString(root));
+    }
+
+    /**
+     * Flushes all pending changes and writes code, trie nodes and the new root under {@link #ROOT_KEY}
+     * in one batch. Receipts live in a separate database and are written just before that batch,
+     * so a persisted root never refers to receipts which are missing. A failed flush or batch write is thrown
+     * to the caller, the stored root stays the one of the previous commit then
+     *
+     * @return the committed root
+     */
+    private byte[] persist() {
+        long start = System.nanoTime();
         super.commit();
+        long hashed = System.nanoTime();
         receiptCache.flush();
-        try {
-            String roothash = toHexString(stateTrie.getRootHash());
+        receiptBatch.flush();
 
-            String path = PathUtils.getDataFileDir();
-            File file = new File(path + "configdata/" + dbId + "root.cfg");
-            if (!file.exists()) file.createNewFile();
-            Properties properties = new Properties();
-            FileOutputStream out = new FileOutputStream(file);
-            properties.setProperty("roothash", roothash);
-            properties.store(out, "Root Configuration");
-            out.close();
-            trieCache.flush();
-            logger.debug("State root updated: {}", roothash);
+        byte[] root = stateTrie.getRootHash();
+        stateRoot = root;
+        stateModified = false;
+        releaseTries();
+        trieCache.flush();
+        stateBatch.put(ROOT_KEY, root);
+        stateBatch.flush();
+        committedRoot = root;
 
-        } catch (Exception e) {
-            logger.error("error occurs when trying to write root.cfg.", e);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Commit: {} storage tries hashed in parallel in {} ms, state root in {} ms, total {} ms",
+                    storageHashCount, TimeUnit.NANOSECONDS.toMillis(storageHashNanos),
+                    TimeUnit.NANOSECONDS.toMillis(hashed - start - storageHashNanos),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        if (nodeCache != null && logger.isDebugEnabled()) {
+            logger.debug("Node cache: {} entries, {} bytes ({} off-heap), hits: {}, misses: {}, evictions: {}",
+                    nodeCache.getEntryCount(), nodeCache.estimateCacheSize(), nodeCache.getOffHeapBytes(),
+                    nodeCache.getHitCount(), nodeCache.getMissCount(), nodeCache.getEvictionCount());
         }
+        return root;
     }
 
     /**
-     * 更新指定数据库 & 更新对应的 root.cfg
-     * @param cfgDir
-     * @param dbId
+     * Reads the root committed by {@link #persist()}
+     * @return root hash or null if the database has never been committed this way
      */
-    public synchronized void commit(String cfgDir, String dbId) {
-        super.commit();
-        receiptCache.flush();
-        try {
-            String roothash = toHexString(stateTrie.getRootHash());
+    public static byte[] loadRoot(Source<byte[], byte[]> stateDS) {
+        return stateDS.get(ROOT_KEY);
+    }
+
+    /**
+     * @return root of the last commit, available without waiting for the repository lock
+     */
+    public byte[] getCommittedRoot() {
+        return committedRoot;
+    }
 
-            File file = new File(cfgDir + dbId + "root.cfg");
-            if (!file.exists()) file.createNewFile();
-            Properties properties = new Properties();
-            FileOutputStream out = new FileOutputStream(file);
-            properties.setProperty("roothash", roothash);
-            properties.store(out, "Root Configuration");
-            out.close();
-            trieCache.flush();
-            logger.info("State root updated: {}", roothash);
+    /**
+     * @return read cache in front of the state database or null if it is disabled
+     */
+    public AdaptiveReadCache getNodeCache() {
+        return nodeCache;
+    }
 
-        } catch (Exception e) {
-            logger.error("error occurs when trying to write root.cfg.", e);
+    // megabytes of inve.repository.nodeCacheSize which are left of inve.repository.nodeCacheTotalSize
+    private static long reserveNodeCache() {
+        long size = SystemProperties.getDefault().repositoryNodeCacheSize();
+        long total = SystemProperties.getDefault().repositoryNodeCacheTotalSize();
+        if (size <= 0) return 0;
+        if (total <= 0) return size;
+        while (true) {
+            long reserved = nodeCacheTotal.get();
+            long ret = Math.min(size, total - reserved);
+            if (ret <= 0) {
+                logger.warn("Node cache budget of {} MB is taken by the open shards, no node cache for this one", total);
+                return 0;
+            }
+            if (nodeCacheTotal.compareAndSet(reserved, reserved + ret)) return ret;
+        }
+    }
+
+    /**
+     * Drops the node cache and returns its memory to the budget of the open shards, called when the
+     * shard is closed. The repository must not be used afterwards
+     */
+    public synchronized void releaseNodeCache() {
+        if (nodeCacheReserved > 0) {
+            nodeCache.clear();
+            nodeCacheTotal.addAndGet(-nodeCacheReserved);
+            nodeCacheReserved = 0;
         }
     }
 
+    Source<byte[], byte[]> getStateDS() {
+        return stateDS;
+    }
+
+    Source<byte[], byte[]> getReceiptDS() {
+        return receiptDS;
+    }
+
+    private static Source<byte[], byte[]> batchWriter(Source<byte[], byte[]> src) {
+        return src instanceof BatchSource
+                ? new BatchSourceWriter<>((BatchSource<byte[], byte[]>) src, new ByteArrayHashMap<>()) : src;
+    }
+
+    /**
+     * @return true if this repository holds changes which have not been committed yet
+     */
+    public synchronized boolean hasPendingChanges() {
+        return storageCache.hasModified()
+                || ((CachedSource) accountStateCache).hasModified()
+                || ((CachedSource) codeCache).hasModified()
+                || ((CachedSource) receiptCache).hasModified();
+    }
+
+    /**
+     * @return root of the current state, recalculated only if an account or storage row has been written
+     * since the last call
+     */
     @Override
     public synchronized byte[] getRoot() {
+        if (stateRoot != null && !stateModified) {
+            return stateRoot;
+        }
+        // the flush writes the storage roots to the accounts itself, so the flag is cleared afterwards
         storageCache.flush();
         accountStateCache.flush();
-        return stateTrie.getRootHash();
+        stateRoot = stateTrie.getRootHash();
+        stateModified = false;
+        return stateRoot;
+    }
+
+    private void storageModified(byte[] address) {
+        modifiedStorage.add(new ByteArrayWrapper(address));
+        stateModified = true;
+    }
+
+    // lets the committed tries drop their nodes, the nodes stay available in trieCache and nodeCache
+    private void releaseTries() {
+        ((TrieImpl) stateTrie).release();
+        for (StorageCache child : flushedStorage) {
+            ((TrieImpl) child.trie).release();
+        }
+        flushedStorage.clear();
     }
 
     @Override
     public synchronized void flush() {
         commit();
+        releaseTries();
+        stateBatch.flush();
     }
 
     @Override
     public Repository getSnapshotTo(byte[] root) {
-        return new INVERepositoryRoot(stateDS, receiptDS, root);
+        return new INVERepositoryRoot(stateDS, receiptDS, root, nodeCache);
     }
 
     @Override
@@ -175,6 +475,7 @@ public class INVERepositoryRoot extends RepositoryImpl {
     @Override
     public synchronized void syncToRoot(byte[] root) {
         stateTrie.setRoot(root);
+        stateRoot = null;
     }
 
     protected TrieImpl createTrie(Source<byte[], byte[]> trieCache, byte[] root) {
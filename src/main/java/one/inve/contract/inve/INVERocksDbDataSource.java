@@ -20,6 +20,7 @@ package one.inve.contract.inve;
 import one.inve.contract.ethplugin.datasource.DbSettings;
 import one.inve.contract.ethplugin.datasource.DbSource;
 import one.inve.contract.ethplugin.datasource.NodeKeyCompositor;
+import one.inve.contract.ethplugin.datasource.Source;
 import one.inve.contract.ethplugin.util.FileUtil;
 import one.inve.contract.util.PathUtils;
 import org.rocksdb.*;
@@ -401,6 +402,86 @@ public class INVERocksDbDataSource implements DbSource<byte[]> {
         return false;
     }
 
+    /**
+     * Takes a RocksDB snapshot of the current database content
+     * @return read-only source which must be closed when no longer used
+     */
+    public Snapshot snapshot() {
+        resetDbLock.readLock().lock();
+        try {
+            if (!isAlive()) throw new RuntimeException("Database '" + name + "' is closed");
+            return new Snapshot(db);
+        } finally {
+            resetDbLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read-only view of the database at the moment it was taken, later writes are not visible through it
+     */
+    public class Snapshot implements Source<byte[], byte[]>, AutoCloseable {
+        private final RocksDB snapshotDb;
+        private final org.rocksdb.Snapshot snapshot;
+        private final ReadOptions snapshotReadOpts;
+        private volatile boolean released;
+
+        private Snapshot(RocksDB snapshotDb) {
+            this.snapshotDb = snapshotDb;
+            this.snapshot = snapshotDb.getSnapshot();
+            this.snapshotReadOpts = new ReadOptions().setSnapshot(snapshot).setVerifyChecksums(false);
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            resetDbLock.readLock().lock();
+            try {
+                // the database may have been closed and reopened meanwhile
+                if (released || !isAlive() || db != snapshotDb) {
+                    throw new RuntimeException("Snapshot of database '" + name + "' is no longer valid");
+                }
+                return snapshotDb.get(snapshotReadOpts, key);
+            } catch (RocksDBException e) {
+                logger.error("Failed to get from snapshot of db '{}'", name, e);
+                throw new RuntimeException(e);
+            } finally {
+                resetDbLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void put(byte[] key, byte[] val) {
+            throw new UnsupportedOperationException("Snapshot of database '" + name + "' is read-only");
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            throw new UnsupportedOperationException("Snapshot of database '" + name + "' is read-only");
+        }
+
+        @Override
+        public boolean flush() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            resetDbLock.readLock().lock();
+            try {
+                synchronized (this) {
+                    if (released) return;
+                    released = true;
+                }
+                // a closed database has released its snapshots already
+                if (isAlive() && db == snapshotDb) {
+                    snapshotDb.releaseSnapshot(snapshot);
+                }
+                snapshotReadOpts.close();
+            } finally {
+                resetDbLock.readLock().unlock();
+            }
+        }
+    }
+
     private void hintOnTooManyOpenFiles(Exception e) {
         if (e.getMessage() != null && e.getMessage().toLowerCase().contains("too many open files")) {
             logger.info("");
@@ -4,7 +4,7 @@ import one.inve.contract.ethplugin.config.CommonConfig;
 import one.inve.contract.ethplugin.config.SystemProperties;
 import one.inve.contract.ethplugin.core.*;
 import one.inve.contract.ethplugin.db.BlockStore;
-import one.inve.contract.ethplugin.util.ByteArraySet;
+import one.inve.contract.ethplugin.util.ByteArrayHashSet;
 import one.inve.contract.ethplugin.vm.DataWord;
 import one.inve.contract.ethplugin.vm.LogInfo;
 import one.inve.contract.ethplugin.vm.PrecompiledContracts;
@@ -15,6 +15,8 @@ import one.inve.contract.inve.vm.hook.VMHook;
 import one.inve.contract.inve.vm.program.INVEProgram;
 import one.inve.contract.inve.vm.program.invoke.INVEProgramInvoke;
 import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactory;
+import one.inve.contract.inve.vm.trace.TraceStream;
+import one.inve.contract.inve.vm.trace.TraceWriter;
 import one.inve.contract.conf.Config;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -65,9 +67,14 @@ public class INVETransactionExecutor {
     long basicTxCost = 0;
     List<LogInfo> logs = null;
 
-    private ByteArraySet touchedAccounts = new ByteArraySet();
+    private ByteArrayHashSet touchedAccounts = new ByteArrayHashSet();
 
     boolean localCall = false;
+    // 手续费不在本交易内转给基金会，由调用方在提交时补记
+    boolean deferFee = false;
+    // VM trace 先留在内存，由调用方在提交时写出或丢弃
+    boolean deferTrace = false;
+    private TraceStream traceStream;
     private final VMHook vmHook;
 
     // public INVETransactionExecutor(Transaction tx, byte[] coinbase, Repository track, BlockStore blockStore,
@@ -240,6 +247,7 @@ public class INVETransactionExecutor {
 
                 this.vm = new VM(vmHook);
                 this.program = new INVEProgram(track.getCodeHash(targetAddress), code, programInvoke, tx, config, vmHook).withCommonConfig(commonConfig);
+                openTraceStream(targetAddress);
             }
         }
 
@@ -274,6 +282,7 @@ public class INVETransactionExecutor {
 
             this.vm = new VM(vmHook);
             this.program = new INVEProgram(tx.getData(), programInvoke, tx, config, vmHook).withCommonConfig(commonConfig);
+            openTraceStream(newContractAddress);
         }
 
         BigInteger endowment = toBI(tx.getValue());
@@ -425,9 +434,11 @@ public class INVETransactionExecutor {
         logger.info("Pay total refund to sender: [{}], refund val: [{}]", toHexString(tx.getSender()), summary.getRefund());
 
         // 将手续费转给基金会
-        track.addBalance(Config.FOUNDATION_ADDRESS.getBytes(), summary.getFee());
-        logger.info(
-            "Pay fees to FOUNDATION: [{}], value is: [{}]", Config.FOUNDATION_ADDRESS, summary.getFee());
+        if (!deferFee) {
+            track.addBalance(Config.FOUNDATION_ADDRESS.getBytes(), summary.getFee());
+            logger.info(
+                "Pay fees to FOUNDATION: [{}], value is: [{}]", Config.FOUNDATION_ADDRESS, summary.getFee());
+        }
         
         if (result != null) {
             logs = result.getLogInfoList();
@@ -451,6 +462,39 @@ public class INVETransactionExecutor {
         return this;
     }
 
+    public INVETransactionExecutor setDeferFee(boolean deferFee) {
+        this.deferFee = deferFee;
+        return this;
+    }
+
+    public INVETransactionExecutor setDeferTrace(boolean deferTrace) {
+        this.deferTrace = deferTrace;
+        return this;
+    }
+
+    // local calls only read the state, they are not traced
+    private void openTraceStream(byte[] contractAddress) {
+        TraceWriter traceWriter = config.vmTrace() && !localCall ? TraceWriter.getInstance() : null;
+        if (traceWriter != null) {
+            traceStream = traceWriter.open(tx.getHash(), contractAddress, deferTrace);
+            program.withTraceStream(traceStream);
+        }
+    }
+
+    /**
+     * Writes out the deferred VM trace, the execution has been committed
+     */
+    public void commitTrace() {
+        if (traceStream != null) traceStream.commit();
+    }
+
+    /**
+     * Drops the deferred VM trace, the execution has been thrown away
+     */
+    public void discardTrace() {
+        if (traceStream != null) traceStream.discard();
+    }
+
 
     public INVETransactionReceipt getReceipt() {
         if (receipt == null) {
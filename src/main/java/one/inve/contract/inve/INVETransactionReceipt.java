@@ -31,7 +31,6 @@ import java.util.List;
 import static one.inve.contract.ethplugin.datasource.MemSizeEstimator.ByteArrayEstimator;
 import static one.inve.contract.ethplugin.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static one.inve.contract.ethplugin.util.ByteUtil.toHexString;
-import static org.apache.commons.lang3.ArrayUtils.nullToEmpty;
 
 /**
  * The transaction receipt is a tuple of three items
@@ -44,6 +43,8 @@ public class INVETransactionReceipt {
 
     private byte[] txState = EMPTY_BYTE_ARRAY;
     private List<LogInfo> logInfoList = new ArrayList<>();
+    // logs of a decoded receipt, parsed on the first access
+    private RLPReader encodedLogs;
 
     private byte[] gasUsed = EMPTY_BYTE_ARRAY;
     private byte[] executionResult = EMPTY_BYTE_ARRAY;
@@ -57,28 +58,18 @@ public class INVETransactionReceipt {
 
     public INVETransactionReceipt(byte[] rlp) {
 
-        RLPList params = RLP.decode2(rlp);
-        RLPList receipt = (RLPList) params.get(0);
+        RLPReader receipt = RLPReader.list(rlp);
 
-        RLPItem txStateRLP = (RLPItem) receipt.get(0);
-        RLPList logs = (RLPList) receipt.get(1);
-        RLPItem gasUsedRLP = (RLPItem) receipt.get(2);
-        RLPItem result = (RLPItem) receipt.get(3);
+        txState = receipt.nextItem().getBytes();
+        encodedLogs = receipt.next().getList();
+        gasUsed = receipt.nextItem().getBytesOrNull();
+        executionResult = receipt.nextItem().getBytes();
 
-        txState = nullToEmpty(txStateRLP.getRLPData());
-        gasUsed = gasUsedRLP.getRLPData();
-        executionResult = (executionResult = result.getRLPData()) == null ? EMPTY_BYTE_ARRAY : executionResult;
-
-        if (receipt.size() > 4) {
-            byte[] errBytes = receipt.get(4).getRLPData();
+        if (receipt.hasNext()) {
+            byte[] errBytes = receipt.next().getRLPData();
             error = errBytes != null ? new String(errBytes, StandardCharsets.UTF_8) : "";
         }
 
-        for (RLPElement log : logs) {
-            LogInfo logInfo = new LogInfo(log.getRLPData());
-            logInfoList.add(logInfo);
-        }
-
         rlpEncoded = rlp;
     }
 
@@ -115,6 +106,14 @@ public class INVETransactionReceipt {
     }   //若是合約創建,則存入新合約地址的byte[];否則,存入執行的返回值
 
     public List<LogInfo> getLogInfoList() {
+        if (encodedLogs != null) {
+            List<LogInfo> logs = new ArrayList<>();
+            while (encodedLogs.hasNext()) {
+                logs.add(new LogInfo(encodedLogs.next().getRLPData()));
+            }
+            logInfoList = logs;
+            encodedLogs = null;
+        }
         return logInfoList;
     }
 
@@ -151,28 +150,22 @@ public class INVETransactionReceipt {
 
     public byte[] getEncoded(boolean receiptTrie) {
 
-        byte[] txStateRLP = RLP.encodeElement(this.txState);
-
-        final byte[] logInfoListRLP;
-        if (logInfoList != null) {
-            byte[][] logInfoListE = new byte[logInfoList.size()][];
-
-            int i = 0;
+        RLPWriter writer = new RLPWriter().startList()
+                .writeBytes(txState)
+                .startList();
+        if (getLogInfoList() != null) {
             for (LogInfo logInfo : logInfoList) {
-                logInfoListE[i] = logInfo.getEncoded();
-                ++i;
+                writer.writeEncoded(logInfo.getEncoded());
             }
-            logInfoListRLP = RLP.encodeList(logInfoListE);
-        } else {
-            logInfoListRLP = RLP.encodeList();
         }
+        writer.endList();
 
-        return receiptTrie ?
-                RLP.encodeList(txStateRLP, logInfoListRLP):
-                RLP.encodeList(txStateRLP, logInfoListRLP,
-                        RLP.encodeElement(gasUsed), RLP.encodeElement(executionResult),
-                        RLP.encodeElement(error.getBytes(StandardCharsets.UTF_8)));
-
+        if (!receiptTrie) {
+            writer.writeBytes(gasUsed)
+                    .writeBytes(executionResult)
+                    .writeBytes(error.getBytes(StandardCharsets.UTF_8));
+        }
+        return writer.endList().toByteArray();
     }
 
     public void setPostTxState(byte[] txState) {
@@ -215,6 +208,7 @@ public class INVETransactionReceipt {
     public void setLogInfoList(List<LogInfo> logInfoList) {
         if (logInfoList == null) return;
         this.logInfoList = logInfoList;
+        this.encodedLogs = null;
         rlpEncoded = null;
     }
 
@@ -235,7 +229,7 @@ public class INVETransactionReceipt {
                 "\n  , gasUsed=" + BigIntegers.fromUnsignedByteArray(gasUsed) +
                 "\n  , error=" + error +
                 "\n  , executionResult=" + toHexString(executionResult) +
-                "\n  , logs=" + logInfoList +
+                "\n  , logs=" + getLogInfoList() +
                 ']';
     }
 
@@ -247,7 +241,7 @@ public class INVETransactionReceipt {
         if (receipt == null) {
             return 0;
         }
-        long logSize = receipt.logInfoList.stream().mapToLong(LogInfo.MemEstimator::estimateSize).sum() + 16;
+        long logSize = receipt.getLogInfoList().stream().mapToLong(LogInfo.MemEstimator::estimateSize).sum() + 16;
         return (receipt.transaction == null ? 0 : Transaction.MemEstimator.estimateSize(receipt.transaction)) +
                 (receipt.txState == EMPTY_BYTE_ARRAY ? 0 : ByteArrayEstimator.estimateSize(receipt.txState)) +
                 (receipt.gasUsed == EMPTY_BYTE_ARRAY ? 0 : ByteArrayEstimator.estimateSize(receipt.gasUsed)) +
@@ -0,0 +1,162 @@
+package one.inve.contract.inve;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.core.Repository;
+import one.inve.contract.ethplugin.core.Transaction;
+import one.inve.contract.ethplugin.datasource.Source;
+import one.inve.contract.ethplugin.db.BlockStoreDummy;
+import one.inve.contract.ethplugin.util.FastByteComparisons;
+import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactoryImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes read-only contract calls on snapshots of the last committed state of a shard.
+ *
+ * A call never touches the shard repository used by writers, so queries and commits do not wait for each other.
+ * For every shard one RocksDB snapshot is kept together with a pool of read-only repositories over it; after a
+ * commit the next call takes a fresh snapshot and the previous one is released once its last call completes.
+ * Calls run on a dedicated thread pool, limited by {@code inve.view.gasLimit} and {@code inve.view.timeout}.
+ */
+public class INVEViewExecutor {
+    private static final Logger logger = LoggerFactory.getLogger("contract");
+
+    private static class Snapshot {
+        final INVERepositoryRoot owner;
+        final byte[] committedRoot;
+        final byte[] root;
+        final Source<byte[], byte[]> stateSource;
+        final ConcurrentLinkedQueue<INVERepositoryRoot> views = new ConcurrentLinkedQueue<>();
+        int refCount;
+        boolean retired;
+
+        Snapshot(INVERepositoryRoot owner, byte[] committedRoot, byte[] root, Source<byte[], byte[]> stateSource) {
+            this.owner = owner;
+            this.committedRoot = committedRoot;
+            this.root = root;
+            this.stateSource = stateSource;
+        }
+    }
+
+    // guarded by itself
+    private static final Map<String, Snapshot> snapshots = new HashMap<>();
+
+    private static ExecutorService executor;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(SystemProperties.getDefault().viewThreads(),
+                    new ThreadFactoryBuilder().setNameFormat("contract-view-%d").setDaemon(true).build());
+        }
+        return executor;
+    }
+
+    /**
+     * Executes the local call against the last committed state of the shard
+     * @return data returned by the call
+     */
+    public static byte[] call(final String dbId, final Transaction tx) {
+        int timeout = SystemProperties.getDefault().viewTimeout();
+        Future<byte[]> future = getExecutor().submit(() -> callOnSnapshot(dbId, tx));
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.error("View transaction on {} timed out after {} ms", dbId, timeout);
+            throw new RuntimeException("View transaction timed out after " + timeout + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            logger.error("View transaction on {} failed", dbId, e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static byte[] callOnSnapshot(String dbId, Transaction tx) {
+        INVERepositoryRoot repo = INVERepositoryRegistry.acquire(dbId);
+        try {
+            Snapshot snapshot = borrow(dbId, repo);
+            INVERepositoryRoot view = snapshot.views.poll();
+            if (view == null) {
+                view = new INVERepositoryRoot(snapshot.stateSource, repo.getReceiptDS(), snapshot.root);
+            }
+            try {
+                // changes of the call stay in a throwaway track, the pooled view is never modified
+                Repository track = view.startTracking();
+                INVETransactionExecutor executor = new INVETransactionExecutor(tx, track, new BlockStoreDummy(),
+                        new INVEProgramInvokeFactoryImpl(), SystemProperties.getDefault().getGenesis())
+                        .setLocalCall(true);
+
+                executor.init();
+                executor.execute();
+                executor.go();
+
+                return executor.getResult().getHReturn();
+            } finally {
+                snapshot.views.offer(view);
+                giveBack(snapshot);
+            }
+        } finally {
+            INVERepositoryRegistry.release(dbId);
+        }
+    }
+
+    private static Snapshot borrow(String dbId, INVERepositoryRoot repo) {
+        byte[] committedRoot = repo.getCommittedRoot();
+        synchronized (snapshots) {
+            Snapshot snapshot = snapshots.get(dbId);
+            // the shard has been committed or reopened since the snapshot was taken
+            if (snapshot == null || snapshot.owner != repo
+                    || !FastByteComparisons.equal(snapshot.committedRoot, committedRoot)) {
+                if (snapshot != null) {
+                    snapshot.retired = true;
+                    if (snapshot.refCount == 0) close(snapshot);
+                }
+                snapshot = open(repo, committedRoot);
+                snapshots.put(dbId, snapshot);
+            }
+            snapshot.refCount++;
+            return snapshot;
+        }
+    }
+
+    private static void giveBack(Snapshot snapshot) {
+        synchronized (snapshots) {
+            snapshot.refCount--;
+            if (snapshot.retired && snapshot.refCount == 0) close(snapshot);
+        }
+    }
+
+    private static Snapshot open(INVERepositoryRoot repo, byte[] committedRoot) {
+        Source<byte[], byte[]> stateDS = repo.getStateDS();
+        if (!(stateDS instanceof INVERocksDbDataSource)) {
+            // no snapshot support, read the committed nodes directly
+            return new Snapshot(repo, committedRoot, committedRoot, stateDS);
+        }
+
+        INVERocksDbDataSource.Snapshot stateSnapshot = ((INVERocksDbDataSource) stateDS).snapshot();
+        // the root stored in the snapshot is consistent with the nodes in it even if a commit has just happened
+        byte[] root = INVERepositoryRoot.loadRoot(stateSnapshot);
+        return new Snapshot(repo, committedRoot, root == null ? committedRoot : root, stateSnapshot);
+    }
+
+    private static void close(Snapshot snapshot) {
+        snapshot.views.clear();
+        if (snapshot.stateSource instanceof INVERocksDbDataSource.Snapshot) {
+            ((INVERocksDbDataSource.Snapshot) snapshot.stateSource).close();
+        }
+    }
+}
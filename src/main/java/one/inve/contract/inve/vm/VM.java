@@ -3,6 +3,7 @@ package one.inve.contract.inve.vm;
 import one.inve.contract.ethplugin.config.BlockchainConfig;
 import one.inve.contract.ethplugin.vm.*;
 import one.inve.contract.inve.vm.hook.VMHook;
+import one.inve.contract.inve.vm.program.INVEDecodedProgram;
 import one.inve.contract.inve.vm.program.INVEProgram;
 import one.inve.contract.inve.vm.program.Stack;
 import org.slf4j.Logger;
@@ -11,9 +12,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -55,6 +59,13 @@ public class VM {
         put(CREATE2, false);
     }};
 
+    // operations charged more than their tier in step(), and GAS which observes the gas left
+    private static final Set<OpCode> dynamicGasOps = EnumSet.of(
+            STOP, SUICIDE, SSTORE, SLOAD, BALANCE, MSTORE, MSTORE8, MLOAD, RETURN, REVERT, SHA3,
+            CALLDATACOPY, RETURNDATACOPY, CODECOPY, EXTCODESIZE, EXTCODECOPY, EXTCODEHASH,
+            CALL, CALLCODE, DELEGATECALL, STATICCALL, CREATE, CREATE2,
+            LOG0, LOG1, LOG2, LOG3, LOG4, EXP, GAS);
+
     // deprecated field that holds VM hook. Will be removed in the future releases.
     private static VMHook deprecatedHook = VMHook.EMPTY;
     private final boolean hasHooks;
@@ -110,36 +121,49 @@ public class VM {
     }
 
     /**
-     * Validates whether operation is allowed
+     * Checks whether operation is allowed
      * with current blockchain config
      * @param op        VM operation
-     * @param program   Current program
      */
-    private void validateOp(OpCode op, INVEProgram program) {
-        if (!(opValidators.containsKey(op))) return;
+    public static boolean isEnabled(OpCode op) {
+        Boolean enabled = opValidators.get(op);
+        return enabled == null || enabled;
+    }
 
-        if (!opValidators.get(op)) {
-            throw INVEProgram.Exception.invalidOpCode(program.getCurrentOp());
-        }
+    /**
+     * Checks whether the operation costs exactly its tier gas and does not depend on the gas left,
+     * such operations may be charged per basic block
+     * @param op        VM operation
+     */
+    public static boolean hasConstantGas(OpCode op) {
+        return !dynamicGasOps.contains(op);
     }
 
     public void step(INVEProgram program) {
-        program.saveOpTrace();
+        if (program.isTraced()) {
+            program.saveOpTrace();
+        }
 
         try {
             BlockchainConfig blockchainConfig = program.getBlockchainConfig();
 
-            OpCode op = OpCode.code(program.getCurrentOp());
+            // operations are resolved and validated once per code
+            INVEDecodedProgram code = program.getDecodedProgram();
+            int startPC = program.getPC();
+            OpCode op = code.getOp(startPC);
             if (op == null) {
                 throw INVEProgram.Exception.invalidOpCode(program.getCurrentOp());
             }
 
-            validateOp(op, program);
-
             program.setLastOp(op.val());
             program.verifyStackSize(op.require());
             program.verifyStackOverflow(op.require(), op.ret()); //Check not exceeding stack limits
 
+            // constant gas of the basic block starting here is charged at once
+            if (!hasHooks && program.isBlockGasEnabled() && code.getBlockEnd(startPC) > 0) {
+                program.prepayGas(code.getBlockGas(startPC), code.getBlockEnd(startPC));
+            }
+
             long oldMemSize = program.getMemSize();
             Stack stack = program.getStack();
 
@@ -367,7 +391,9 @@ public class VM {
 
             //DEBUG System.out.println(" OP IS " + op.name() + " GASCOST IS " + gasCost + " NUM IS " + op.asInt());
             logger.info("op name is: {}", op.name());
-            program.spendGas(gasCost, op.name());
+            if (!program.isGasPrepaid()) {
+                program.spendGas(gasCost, op.name());
+            }
 
             // Log debugging line for VM
             // if (program.getNumber().intValue() == dumpBlock) {
@@ -973,7 +999,7 @@ public class VM {
                 case DUP13: case DUP14: case DUP15: case DUP16:{
 
                     int n = op.val() - OpCode.DUP1.val() + 1;
-                    DataWord word_1 = stack.get(stack.size() - n);
+                    DataWord word_1 = stack.peek(n);
                     program.stackPush(word_1);
                     program.step();
 
@@ -1170,13 +1196,12 @@ public class VM {
                 case PUSH30:
                 case PUSH31:
                 case PUSH32: {
-                    program.step();
                     int nPush = op.val() - PUSH1.val() + 1;
-
-                    byte[] data = program.sweep(nPush);
+                    DataWord data = code.getPushData(startPC);
+                    program.setPC(startPC + nPush + 1);
 
                     if (logger.isInfoEnabled())
-                        hint = "" + toHexString(data);
+                        hint = "" + toHexString(Arrays.copyOfRange(data.getData(), 32 - nPush, 32));
 
                     program.stackPush(data);
                 }
@@ -1323,6 +1348,11 @@ public class VM {
                                 op.name()), program.getGas().value(),
                         program.getCallDeep(), hint);
 
+            // a jump to a pushed destination is executed within the same step unless every operation is traced
+            if (code.isPushJump(startPC) && !hasHooks && !program.isTraced()) {
+                stepJump(program, code);
+            }
+
             // vmCounter++;
         } catch (RuntimeException e) {
             logger.warn("VM halted: [{}]", e);
@@ -1335,6 +1365,44 @@ public class VM {
         }
     }
 
+    /**
+     * Executes the JUMP or JUMPI following a PUSH of its destination,
+     * with the same checks and gas as a separate step
+     */
+    private void stepJump(INVEProgram program, INVEDecodedProgram code) {
+        OpCode op = code.getOp(program.getPC());
+
+        program.setLastOp(op.val());
+        program.verifyStackSize(op.require());
+        program.verifyStackOverflow(op.require(), op.ret());
+
+        logger.info("op name is: {}", op.name());
+        if (!program.isGasPrepaid()) {
+            program.spendGas(op.getTier().asInt(), op.name());
+        }
+
+        String hint = "";
+        DataWord pos = program.stackPop();
+        if (op == JUMP || !program.stackPop().isZero()) {
+            int nextPC = program.verifyJumpDest(pos);
+
+            if (logger.isInfoEnabled())
+                hint = "~> " + nextPC;
+
+            program.setPC(nextPC);
+        } else {
+            program.step();
+        }
+
+        program.setPreviouslyExecutedOp(op.val());
+
+        if (logger.isInfoEnabled())
+            logger.info(logString, String.format("%5s", "[" + program.getPC() + "]"),
+                    String.format("%-12s",
+                            op.name()), program.getGas().value(),
+                    program.getCallDeep(), hint);
+    }
+
     public void play(INVEProgram program) {
         if (program.byTestingSuite()) return;
 
@@ -1356,6 +1424,7 @@ public class VM {
             if (hasHooks) {
                 onHookEvent(hook -> hook.stopPlay(program));
             }
+            program.endTraceStream();
         }
     }
 
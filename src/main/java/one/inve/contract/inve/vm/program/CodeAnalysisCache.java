@@ -0,0 +1,144 @@
+package one.inve.contract.inve.vm.program;
+
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.datasource.Source;
+import one.inve.contract.ethplugin.db.ByteArrayWrapper;
+import one.inve.contract.ethplugin.util.ClockCache;
+import one.inve.contract.ethplugin.vm.program.ProgramPrecompile;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM wide cache of code analysis keyed by code hash.
+ *
+ * An entry holds the {@link INVEDecodedProgram} (operations, PUSH data, jump destinations and basic blocks) and
+ * the {@link ProgramPrecompile} of the code, so each code is analysed once however many repositories, snapshots
+ * and programs execute it. Lookups are lock free; concurrent misses for the same code wait for a single analysis.
+ *
+ * The cache is bounded by the total length of the cached code. When it is exceeded entries are evicted in
+ * approximate LRU order, see {@link ClockCache}. Jump destinations are optionally persisted to the source passed to
+ * {@link #getPrecompile}, e.g. the precompile source of the state database, and read back on a miss.
+ */
+public class CodeAnalysisCache {
+
+    private static volatile CodeAnalysisCache instance;
+
+    // weighted by the code length
+    private final ClockCache<ByteArrayWrapper, Analysis> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static class Analysis {
+        final INVEDecodedProgram decoded;
+        final int weight;
+        volatile ProgramPrecompile precompile;
+
+        Analysis(byte[] code) {
+            this.decoded = INVEDecodedProgram.analyse(code);
+            this.weight = code.length;
+        }
+    }
+
+    /**
+     * @param capacity maximal total length of the cached code in bytes, 0 disables caching
+     */
+    public CodeAnalysisCache(long capacity) {
+        this.entries = new ClockCache<>(capacity, analysis -> analysis.weight);
+    }
+
+    public static CodeAnalysisCache getInstance() {
+        if (instance == null) {
+            synchronized (CodeAnalysisCache.class) {
+                if (instance == null) {
+                    instance = new CodeAnalysisCache(SystemProperties.getDefault().vmCodeCacheSize());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param codeHash hash of the code or null if the code is not stored in the repository
+     */
+    public INVEDecodedProgram getDecoded(byte[] codeHash, byte[] code) {
+        Analysis analysis = get(codeHash, code);
+        return analysis == null ? INVEDecodedProgram.analyse(code) : analysis.decoded;
+    }
+
+    /**
+     * @param codeHash hash of the code or null if the code is not stored in the repository
+     * @param persistent source the jump destinations are read from and saved to, may be null
+     */
+    public ProgramPrecompile getPrecompile(byte[] codeHash, byte[] code, Source<byte[], ProgramPrecompile> persistent) {
+        Analysis analysis = get(codeHash, code);
+        if (analysis != null && analysis.precompile != null) return analysis.precompile;
+
+        ProgramPrecompile ret = null;
+        if (codeHash != null && persistent != null) {
+            ret = persistent.get(codeHash);
+        }
+        if (ret == null) {
+            ret = ProgramPrecompile.compile(code);
+            if (codeHash != null && persistent != null) {
+                persistent.put(codeHash, ret);
+            }
+        }
+        if (analysis != null) analysis.precompile = ret;
+        return ret;
+    }
+
+    // null if the code can't be cached
+    private Analysis get(byte[] codeHash, byte[] code) {
+        if (codeHash == null || code.length > entries.getCapacity()) return null;
+
+        ByteArrayWrapper key = new ByteArrayWrapper(codeHash);
+        Analysis ret = entries.get(key);
+        if (ret != null && ret.weight == code.length) {
+            hits.increment();
+            return ret;
+        }
+        misses.increment();
+        if (ret != null) {
+            // another code under the same hash, should never happen with a sound hash
+            entries.remove(key, ret);
+        }
+        return entries.computeIfAbsent(key, k -> new Analysis(code));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getCodeSize() {
+        return entries.getWeight();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CodeAnalysisCache[entries: %d, code: %d/%d bytes, hits: %d, misses: %d, evictions: %d, hit rate: %.2f]",
+                size(), getCodeSize(), entries.getCapacity(), getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+}
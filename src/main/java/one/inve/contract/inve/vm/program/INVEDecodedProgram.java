@@ -0,0 +1,144 @@
+package one.inve.contract.inve.vm.program;
+
+import one.inve.contract.ethplugin.vm.DataWord;
+import one.inve.contract.ethplugin.vm.OpCode;
+import one.inve.contract.inve.vm.VM;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static one.inve.contract.ethplugin.vm.OpCode.*;
+
+/**
+ * Contract code translated once for execution: operations resolved and validated against the
+ * enabled instruction set, PUSH immediates built as {@link DataWord}s, jump destinations in a bitset
+ * and PUSH + JUMP / JUMPI pairs marked so that the VM can execute them as one instruction.
+ *
+ * The code is also split into basic blocks of operations with constant gas cost, see {@link VM#hasConstantGas}.
+ * A block starts at a JUMPDEST or after an operation with dynamic cost and ends after a JUMP or JUMPI or before
+ * the next JUMPDEST or dynamic operation, so it is always entered at its first operation and, unless halted,
+ * runs to its end.
+ *
+ * The translation depends on the code only, so programs of contracts with the same code hash share it
+ * through the {@link CodeAnalysisCache}.
+ */
+public class INVEDecodedProgram {
+
+    private final int length;
+    // enabled operation at every offset, null for unknown and disabled opcodes
+    private final OpCode[] ops;
+    // value pushed by the PUSH operation starting at the offset
+    private final DataWord[] pushData;
+    private final BitSet jumpdest = new BitSet();
+    // PUSH operations directly followed by a JUMP or JUMPI
+    private final BitSet pushJump = new BitSet();
+    // summed constant gas and end offset of the basic block starting at the offset, end is 0 if none starts there
+    private final long[] blockGas;
+    private final int[] blockEnd;
+
+    private INVEDecodedProgram(byte[] code) {
+        this.length = code.length;
+        this.ops = new OpCode[code.length];
+        this.pushData = new DataWord[code.length];
+        this.blockGas = new long[code.length];
+        this.blockEnd = new int[code.length];
+
+        for (int i = 0; i < code.length; ++i) {
+            OpCode op = OpCode.code(code[i]);
+            ops[i] = op != null && VM.isEnabled(op) ? op : null;
+        }
+
+        for (int i = 0; i < code.length; i = next(i)) {
+            OpCode op = ops[i];
+            if (op == null) continue;
+
+            if (op == JUMPDEST) jumpdest.set(i);
+
+            if (op.asInt() >= PUSH1.asInt() && op.asInt() <= PUSH32.asInt()) {
+                int nPush = op.asInt() - PUSH1.asInt() + 1;
+                // immediates running past the end of code are padded with zeros
+                pushData[i] = DataWord.of(Arrays.copyOfRange(code, i + 1, i + 1 + nPush));
+
+                int next = i + nPush + 1;
+                if (next < code.length && (ops[next] == JUMP || ops[next] == JUMPI)) pushJump.set(i);
+            }
+        }
+
+        int block = -1;
+        for (int i = 0; i < code.length; i = next(i)) {
+            OpCode op = ops[i];
+            if (op == null || !VM.hasConstantGas(op)) {
+                block = -1;
+                continue;
+            }
+
+            if (block < 0 || op == JUMPDEST) block = i;
+            blockGas[block] += op.getTier().asInt();
+            blockEnd[block] = next(i);
+
+            if (op == JUMP || op == JUMPI) block = -1;
+        }
+    }
+
+    // offset of the operation following the one at the offset
+    private int next(int pc) {
+        OpCode op = ops[pc];
+        if (op != null && op.asInt() >= PUSH1.asInt() && op.asInt() <= PUSH32.asInt()) {
+            return pc + op.asInt() - PUSH1.asInt() + 2;
+        }
+        return pc + 1;
+    }
+
+    /**
+     * Returns the translation of the code, shared between programs with the same code hash
+     *
+     * @param codeHash hash of the code or null if the code is not stored in the repository
+     */
+    public static INVEDecodedProgram decode(byte[] codeHash, byte[] code) {
+        return CodeAnalysisCache.getInstance().getDecoded(codeHash, code);
+    }
+
+    static INVEDecodedProgram analyse(byte[] code) {
+        return new INVEDecodedProgram(code);
+    }
+
+    /**
+     * @return operation at the offset, null if it is not a valid operation; empty code is a single STOP
+     */
+    public OpCode getOp(int pc) {
+        return pc < length ? ops[pc] : STOP;
+    }
+
+    public DataWord getPushData(int pc) {
+        return pushData[pc];
+    }
+
+    public boolean hasJumpDest(int pc) {
+        return pc >= 0 && jumpdest.get(pc);
+    }
+
+    /**
+     * @return true if the operation at the offset is a PUSH followed by a JUMP or JUMPI
+     */
+    public boolean isPushJump(int pc) {
+        return pushJump.get(pc);
+    }
+
+    /**
+     * @return end offset of the basic block starting at the offset, 0 if no block starts there
+     */
+    public int getBlockEnd(int pc) {
+        return pc < length ? blockEnd[pc] : 0;
+    }
+
+    /**
+     * @return summed constant gas of the basic block starting at the offset
+     */
+    public long getBlockGas(int pc) {
+        return blockGas[pc];
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
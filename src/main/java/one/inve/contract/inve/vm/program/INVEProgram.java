@@ -8,7 +8,7 @@ import one.inve.contract.ethplugin.core.Repository;
 import one.inve.contract.ethplugin.core.Transaction;
 import one.inve.contract.ethplugin.crypto.HashUtil;
 import one.inve.contract.ethplugin.db.ContractDetails;
-import one.inve.contract.ethplugin.util.ByteArraySet;
+import one.inve.contract.ethplugin.util.ByteArrayHashSet;
 import one.inve.contract.ethplugin.util.ByteUtil;
 import one.inve.contract.ethplugin.util.FastByteComparisons;
 import one.inve.contract.ethplugin.util.Utils;
@@ -30,6 +30,7 @@ import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactory;
 import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactoryImpl;
 import one.inve.contract.inve.vm.trace.INVEProgramTrace;
 import one.inve.contract.inve.vm.trace.INVEProgramTraceListener;
+import one.inve.contract.inve.vm.trace.TraceStream;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -91,9 +92,12 @@ public class INVEProgram {
     private byte lastOp;
     private byte previouslyExecutedOp;
     private boolean stopped;
-    private ByteArraySet touchedAccounts = new ByteArraySet();
+    private ByteArrayHashSet touchedAccounts = new ByteArrayHashSet();
 
     private ProgramPrecompile programPrecompile;
+    private INVEDecodedProgram decodedProgram;
+    // end of the basic block whose constant gas has been charged in advance
+    private int prepaidGasEnd;
 
     CommonConfig commonConfig = CommonConfig.getDefault();
 
@@ -101,6 +105,11 @@ public class INVEProgram {
 
     private final INVEConfig inveConfig;
     private final VMHook vmHook;
+    // operations are recorded in the trace and mutations dispatched to the trace listener,
+    // false if neither tracing nor hooks nor debug logging are enabled
+    private final boolean traced;
+    // trace of the sampled transaction written as it executes, shared with the nested calls
+    private TraceStream traceStream;
 
     public INVEProgram(byte[] ops, INVEProgramInvoke programInvoke) {
         this(ops, programInvoke, (Transaction) null);
@@ -128,31 +137,38 @@ public class INVEProgram {
         this.ops = nullToEmpty(ops);
 
         this.vmHook = vmHook;
-        this.traceListener = new INVEProgramTraceListener(config.vmTrace());
-        this.memory = setupProgramListener(new Memory());
-        this.stack = setupProgramListener(new Stack());
+        this.traced = config.vmTrace() || !vmHook.isEmpty() || logger.isDebugEnabled();
+        if (traced) {
+            this.traceListener = new INVEProgramTraceListener(config.vmTrace());
+            this.memory = setupProgramListener(new Memory());
+            this.stack = setupProgramListener(new Stack());
+            this.storage = setupProgramListener(new Storage(programInvoke));
+            this.trace = new INVEProgramTrace(config, programInvoke);
+        } else {
+            // fast path: nothing observes memory and stack, storage writes are only collected for the diff
+            this.memory = new Memory();
+            this.stack = new Stack();
+            this.storage = new Storage(programInvoke);
+            this.storage.setProgramListener(storageDiffListener);
+        }
         this.originalRepo = programInvoke.getRepository().clone();
-        this.storage = setupProgramListener(new Storage(programInvoke));
-        this.trace = new INVEProgramTrace(config, programInvoke);
         this.inveConfig = new INVEConfig();
     }
 
     public ProgramPrecompile getProgramPrecompile() {
         if (programPrecompile == null) {
-            if (codeHash != null && commonConfig.precompileSource() != null) {
-                programPrecompile = commonConfig.precompileSource().get(codeHash);
-            }
-            if (programPrecompile == null) {
-                programPrecompile = ProgramPrecompile.compile(ops);
-
-                if (codeHash != null && commonConfig.precompileSource() != null) {
-                    commonConfig.precompileSource().put(codeHash, programPrecompile);
-                }
-            }
+            programPrecompile = CodeAnalysisCache.getInstance().getPrecompile(codeHash, ops, commonConfig.precompileSource());
         }
         return programPrecompile;
     }
 
+    public INVEDecodedProgram getDecodedProgram() {
+        if (decodedProgram == null) {
+            decodedProgram = INVEDecodedProgram.decode(codeHash, ops);
+        }
+        return decodedProgram;
+    }
+
     public INVEProgram withCommonConfig(CommonConfig commonConfig) {
         this.commonConfig = commonConfig;
         return this;
@@ -315,7 +331,7 @@ public class INVEProgram {
     }
 
     public void memorySave(DataWord addrB, DataWord value) {
-        memory.write(addrB.intValue(), value.getData(), value.getData().length, false);
+        memory.writeWord(addrB.intValue(), value);
     }
 
     public void memorySaveLimited(int addr, byte[] data, int dataSize) {
@@ -651,7 +667,8 @@ public class INVEProgram {
 
             VM vm = new VM(vmHook);
             INVEProgram program = new INVEProgram(getStorage().getCodeHash(codeAddress), programCode, programInvoke, internalTx, config, vmHook)
-                    .withCommonConfig(commonConfig);
+                    .withCommonConfig(commonConfig)
+                    .withTraceStream(traceStream);
             vm.play(program);
             result = program.getResult();
 
@@ -998,9 +1015,37 @@ public class INVEProgram {
     }
 
     public void saveOpTrace() {
-        if (this.pc < ops.length) {
-            trace.addOp(ops[pc], pc, getCallDeep(), getGas(), traceListener.resetActions());
+        if (traced && this.pc < ops.length) {
+            if (traceStream != null) {
+                traceStream.op(ops[pc], pc, getCallDeep(), getGasLong());
+            } else {
+                trace.addOp(ops[pc], pc, getCallDeep(), getGas(), traceListener.resetActions());
+            }
+        }
+    }
+
+    /**
+     * Streams the trace of this program to the stream instead of collecting it in {@link #getTrace()}
+     */
+    public INVEProgram withTraceStream(TraceStream traceStream) {
+        if (traceListener != null && traceStream != null) {
+            this.traceStream = traceStream;
+            traceListener.setTraceStream(traceStream, getCallDeep());
+            if (getCallDeep() > 0) traceStream.call(getCallDeep());
         }
+        return this;
+    }
+
+    /**
+     * Writes the result of the transaction and ends its streamed trace, nested calls leave the stream open
+     */
+    public void endTraceStream() {
+        if (traceStream == null || getCallDeep() > 0) return;
+
+        traceStream.result(getResult().getHReturn());
+        if (getResult().getException() != null) traceStream.error(getResult().getException());
+        traceStream.close();
+        traceStream = null;
     }
 
     public INVEProgramTrace getTrace() {
@@ -1180,6 +1225,44 @@ public class INVEProgram {
     }
 
 
+    /**
+     * @return true if every executed operation has to be passed to {@link #saveOpTrace()} and executed
+     * separately, decided once at construction: the VM skips the call and may charge gas per basic block
+     * or fuse pushed jumps when neither tracing nor hooks nor debug logging are enabled
+     */
+    public boolean isTraced() {
+        return traced;
+    }
+
+    /**
+     * @return true if constant gas may be charged per basic block, the gas left is then
+     * accurate only at the operations with dynamic cost
+     */
+    public boolean isBlockGasEnabled() {
+        return config.vmBlockGas() && !isTraced();
+    }
+
+    /**
+     * Charges the constant gas of the basic block starting at the current operation if there is enough gas.
+     * Otherwise operations of the block are charged one by one, so the program still runs out of gas
+     * at the same operation
+     */
+    public void prepayGas(long blockGas, int blockEnd) {
+        if (getGasLong() >= blockGas) {
+            spendGas(blockGas, "basic block");
+            prepaidGasEnd = blockEnd;
+        } else {
+            prepaidGasEnd = 0;
+        }
+    }
+
+    /**
+     * @return true if the current operation belongs to a basic block whose constant gas has been charged
+     */
+    public boolean isGasPrepaid() {
+        return pc < prepaidGasEnd;
+    }
+
     public void addListener(ProgramOutListener listener) {
         this.listener = listener;
     }
@@ -1189,7 +1272,7 @@ public class INVEProgram {
             throw INVEProgram.Exception.badJumpDestination(-1);
         }
         int ret = nextPC.intValue();
-        if (!getProgramPrecompile().hasJumpDest(ret)) {
+        if (!getDecodedProgram().hasJumpDest(ret)) {
             throw INVEProgram.Exception.badJumpDestination(ret);
         }
         return ret;
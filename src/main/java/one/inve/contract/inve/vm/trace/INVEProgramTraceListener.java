@@ -7,39 +7,58 @@ public class INVEProgramTraceListener extends ProgramListenerAdaptor {
 
     private final boolean enabled;
     private OpActions actions = new OpActions();
+    // if set the actions are streamed instead of collected
+    private TraceStream stream;
+    private int deep;
 
     public INVEProgramTraceListener(boolean enabled) {
         this.enabled = enabled;
     }
 
+    public void setTraceStream(TraceStream stream, int deep) {
+        this.stream = stream;
+        this.deep = deep;
+    }
+
     @Override
     public void onMemoryExtend(int delta) {
-        if (enabled) actions.addMemoryExtend(delta);
+        if (stream != null) stream.memoryExtend(deep, delta);
+        else if (enabled) actions.addMemoryExtend(delta);
     }
 
     @Override
     public void onMemoryWrite(int address, byte[] data, int size) {
-        if (enabled) actions.addMemoryWrite(address, data, size);
+        if (stream != null) stream.memoryWrite(deep, address, data, size);
+        else if (enabled) actions.addMemoryWrite(address, data, size);
     }
 
     @Override
     public void onStackPop() {
-        if (enabled) actions.addStackPop();
+        if (stream != null) stream.stackPop(deep);
+        else if (enabled) actions.addStackPop();
     }
 
     @Override
     public void onStackPush(DataWord value) {
-        if (enabled) actions.addStackPush(value);
+        if (stream != null) stream.stackPush(deep, value);
+        else if (enabled) actions.addStackPush(value);
     }
 
     @Override
     public void onStackSwap(int from, int to) {
-        if (enabled) actions.addStackSwap(from, to);
+        if (stream != null) stream.stackSwap(deep, from, to);
+        else if (enabled) actions.addStackSwap(from, to);
     }
 
     @Override
     public void onStoragePut(DataWord key, DataWord value) {
-        if (enabled) {
+        if (stream != null) {
+            if (value.equals(DataWord.ZERO)) {
+                stream.storageRemove(deep, key);
+            } else {
+                stream.storagePut(deep, key, value);
+            }
+        } else if (enabled) {
             if (value.equals(DataWord.ZERO)) {
                 actions.addStorageRemove(key);
             } else {
@@ -50,7 +69,8 @@ public class INVEProgramTraceListener extends ProgramListenerAdaptor {
 
     @Override
     public void onStorageClear() {
-        if (enabled) actions.addStorageClear();
+        if (stream != null) stream.storageClear(deep);
+        else if (enabled) actions.addStorageClear();
     }
 
     public OpActions resetActions() {
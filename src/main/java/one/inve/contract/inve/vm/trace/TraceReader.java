@@ -0,0 +1,228 @@
+package one.inve.contract.inve.vm.trace;
+
+import one.inve.contract.ethplugin.vm.DataWord;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static one.inve.contract.ethplugin.util.ByteUtil.toHexString;
+import static one.inve.contract.inve.vm.trace.TraceStream.*;
+
+/**
+ * Offline decoder of the files written by {@link TraceWriter}, rebuilds every traced transaction as the same
+ * {@link INVEProgramTrace} the VM collects in memory, so the JSON is the one of {@link INVEProgramTrace#asJsonString}.
+ *
+ * Traces are passed on as they end in the file. Traces cut off by the size limit of the file are passed on at the
+ * end with an error saying so.
+ *
+ * Usage: {@code TraceReader <trace file> <output dir>} writes a {@code <tx hash>.json} per transaction.
+ */
+public class TraceReader {
+
+    private final DataInputStream in;
+
+    private static class Decoder {
+        final INVEProgramTrace trace = new INVEProgramTrace();
+        String txHash;
+        // actions recorded since the last operation of the program at each call depth
+        final Map<Integer, OpActions> pending = new HashMap<>();
+
+        OpActions actions(int deep) {
+            return pending.computeIfAbsent(deep, d -> new OpActions());
+        }
+    }
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 1 << 16));
+        byte[] magic = new byte[TraceWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, TraceWriter.MAGIC)) throw new IOException("Not a VM trace file");
+        int version = this.in.readUnsignedByte();
+        if (version != TraceWriter.VERSION) throw new IOException("Unsupported VM trace version " + version);
+    }
+
+    /**
+     * Decodes the whole input
+     *
+     * @param consumer receives the hex hash of the transaction, empty for calls without one, and its trace
+     */
+    public void read(BiConsumer<String, INVEProgramTrace> consumer) throws IOException {
+        Map<Integer, Decoder> open = new LinkedHashMap<>();
+        while (true) {
+            int stream;
+            try {
+                stream = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            byte[] block = new byte[in.readInt()];
+            in.readFully(block);
+
+            Decoder decoder = open.computeIfAbsent(stream, s -> new Decoder());
+            if (decode(decoder, new Cursor(block))) {
+                open.remove(stream);
+                consumer.accept(decoder.txHash, decoder.trace);
+            }
+        }
+        for (Decoder decoder : open.values()) {
+            if (decoder.trace.getError() == null) decoder.trace.setError("trace truncated");
+            consumer.accept(decoder.txHash, decoder.trace);
+        }
+    }
+
+    // true if the trace has ended
+    private static boolean decode(Decoder decoder, Cursor cursor) throws IOException {
+        while (cursor.hasMore()) {
+            int type = cursor.readByte();
+            switch (type) {
+                case START:
+                    decoder.txHash = toHexString(cursor.readBytes());
+                    decoder.trace.setContractAddress(toHexString(cursor.readBytes()));
+                    break;
+                case OP: {
+                    byte code = (byte) cursor.readByte();
+                    int pc = cursor.readInt();
+                    int deep = cursor.readInt();
+                    long gas = cursor.readVarLong();
+                    OpActions actions = decoder.pending.remove(deep);
+                    decoder.trace.addOp(code, pc, deep, DataWord.of(gas), actions == null ? new OpActions() : actions);
+                    break;
+                }
+                case CALL:
+                    decoder.pending.remove(cursor.readInt());
+                    break;
+                case STACK_POP:
+                    decoder.actions(cursor.readInt()).addStackPop();
+                    break;
+                case STACK_PUSH: {
+                    int deep = cursor.readInt();
+                    decoder.actions(deep).addStackPush(cursor.readWord());
+                    break;
+                }
+                case STACK_SWAP: {
+                    int deep = cursor.readInt();
+                    int from = cursor.readInt();
+                    decoder.actions(deep).addStackSwap(from, cursor.readInt());
+                    break;
+                }
+                case MEMORY_EXTEND: {
+                    int deep = cursor.readInt();
+                    decoder.actions(deep).addMemoryExtend(cursor.readVarLong());
+                    break;
+                }
+                case MEMORY_WRITE: {
+                    int deep = cursor.readInt();
+                    int address = cursor.readInt();
+                    int size = cursor.readInt();
+                    byte[] data = cursor.readBytes();
+                    decoder.actions(deep).addMemoryWrite(address, data, Math.min(size, data.length * 2));
+                    break;
+                }
+                case STORAGE_PUT: {
+                    int deep = cursor.readInt();
+                    DataWord key = cursor.readWord();
+                    decoder.actions(deep).addStoragePut(key, cursor.readWord());
+                    break;
+                }
+                case STORAGE_REMOVE: {
+                    int deep = cursor.readInt();
+                    decoder.actions(deep).addStorageRemove(cursor.readWord());
+                    break;
+                }
+                case STORAGE_CLEAR:
+                    decoder.actions(cursor.readInt()).addStorageClear();
+                    break;
+                case RESULT:
+                    decoder.trace.result(cursor.readBytes());
+                    break;
+                case ERROR:
+                    decoder.trace.setError(new String(cursor.readBytes(), StandardCharsets.UTF_8));
+                    break;
+                case END:
+                    return true;
+                default:
+                    throw new IOException("Unknown VM trace event " + type);
+            }
+        }
+        return false;
+    }
+
+    private static class Cursor {
+        final byte[] data;
+        int pos;
+
+        Cursor(byte[] data) {
+            this.data = data;
+        }
+
+        boolean hasMore() {
+            return pos < data.length;
+        }
+
+        int readByte() throws IOException {
+            if (pos >= data.length) throw new IOException("Truncated VM trace event");
+            return data[pos++] & 0xFF;
+        }
+
+        long readVarLong() throws IOException {
+            long ret = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                ret |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return ret;
+                if (shift > 56) throw new IOException("Malformed VM trace varint");
+            }
+        }
+
+        int readInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        byte[] readBytes() throws IOException {
+            int len = readInt();
+            if (len < 0 || len > data.length - pos) throw new IOException("Truncated VM trace event");
+            byte[] ret = Arrays.copyOfRange(data, pos, pos + len);
+            pos += len;
+            return ret;
+        }
+
+        DataWord readWord() throws IOException {
+            return DataWord.of(readBytes());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TraceReader <trace file> <output dir>");
+            System.exit(1);
+        }
+        File dir = new File(args[1]);
+        dir.mkdirs();
+        int[] count = new int[1];
+        try (InputStream in = new FileInputStream(args[0])) {
+            new TraceReader(in).read((txHash, trace) -> {
+                String name = txHash.isEmpty() ? "call-" + count[0] : txHash;
+                try (OutputStream out = new FileOutputStream(new File(dir, name + ".json"))) {
+                    out.write(trace.asJsonString(true).getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                count[0]++;
+            });
+        }
+        System.out.println(count[0] + " traces written to " + dir.getAbsolutePath());
+    }
+}
@@ -0,0 +1,232 @@
+package one.inve.contract.inve.vm.trace;
+
+import one.inve.contract.ethplugin.vm.DataWord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+import static one.inve.contract.ethplugin.util.ByteUtil.EMPTY_BYTE_ARRAY;
+
+/**
+ * Trace of one transaction written by a {@link TraceWriter}.
+ *
+ * Events are encoded as a type byte followed by unsigned LEB128 varints and length prefixed byte strings, words
+ * without their leading zeroes. Stack, memory and storage events carry the call depth of the program, since the
+ * actions of a call are attached to its own next operation. Events are buffered and written in blocks, an event
+ * never spans two blocks.
+ *
+ * The programs of a transaction and of its nested calls share the stream, so it is used by a single thread.
+ * A deferred stream keeps its blocks until the execution is committed, see {@link #commit()} and
+ * {@link #discard()}.
+ */
+public class TraceStream {
+
+    static final int START = 0;
+    static final int OP = 1;
+    static final int STACK_POP = 2;
+    static final int STACK_PUSH = 3;
+    static final int STACK_SWAP = 4;
+    static final int MEMORY_EXTEND = 5;
+    static final int MEMORY_WRITE = 6;
+    static final int STORAGE_PUT = 7;
+    static final int STORAGE_REMOVE = 8;
+    static final int STORAGE_CLEAR = 9;
+    static final int CALL = 10;
+    static final int RESULT = 11;
+    static final int ERROR = 12;
+    static final int END = 13;
+
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final TraceWriter writer;
+    private final int id;
+
+    private byte[] buf = new byte[BLOCK_SIZE + 256];
+    private int size;
+    // the writer refused a block, the rest of the trace is dropped
+    private boolean stopped;
+    // blocks of a deferred stream which is not committed yet, null if blocks are written right away
+    private List<byte[]> deferred;
+
+    TraceStream(TraceWriter writer, int id, byte[] txHash, byte[] contractAddress, boolean deferred) {
+        this.writer = writer;
+        this.id = id;
+        this.deferred = deferred ? new ArrayList<>() : null;
+        writeByte(START);
+        writeBytes(txHash == null ? EMPTY_BYTE_ARRAY : txHash);
+        writeBytes(contractAddress);
+    }
+
+    public void op(byte code, int pc, int deep, long gas) {
+        writeByte(OP);
+        writeByte(code);
+        writeVarLong(pc);
+        writeVarLong(deep);
+        writeVarLong(gas);
+        endEvent();
+    }
+
+    /**
+     * Marks the start of a nested call, its program begins with no pending actions
+     */
+    public void call(int deep) {
+        writeByte(CALL);
+        writeVarLong(deep);
+        endEvent();
+    }
+
+    public void stackPop(int deep) {
+        writeByte(STACK_POP);
+        writeVarLong(deep);
+        endEvent();
+    }
+
+    public void stackPush(int deep, DataWord value) {
+        writeByte(STACK_PUSH);
+        writeVarLong(deep);
+        writeWord(value);
+        endEvent();
+    }
+
+    public void stackSwap(int deep, int from, int to) {
+        writeByte(STACK_SWAP);
+        writeVarLong(deep);
+        writeVarLong(from);
+        writeVarLong(to);
+        endEvent();
+    }
+
+    public void memoryExtend(int deep, long delta) {
+        writeByte(MEMORY_EXTEND);
+        writeVarLong(deep);
+        writeVarLong(delta);
+        endEvent();
+    }
+
+    /**
+     * Keeps what {@link OpActions#addMemoryWrite} records: the first size hex digits of the data
+     */
+    public void memoryWrite(int deep, int address, byte[] data, int size) {
+        writeByte(MEMORY_WRITE);
+        writeVarLong(deep);
+        writeVarLong(address);
+        writeVarLong(size);
+        writeBytes(data, Math.min(data.length, (size + 1) / 2));
+        endEvent();
+    }
+
+    public void storagePut(int deep, DataWord key, DataWord value) {
+        writeByte(STORAGE_PUT);
+        writeVarLong(deep);
+        writeWord(key);
+        writeWord(value);
+        endEvent();
+    }
+
+    public void storageRemove(int deep, DataWord key) {
+        writeByte(STORAGE_REMOVE);
+        writeVarLong(deep);
+        writeWord(key);
+        endEvent();
+    }
+
+    public void storageClear(int deep) {
+        writeByte(STORAGE_CLEAR);
+        writeVarLong(deep);
+        endEvent();
+    }
+
+    public void result(byte[] result) {
+        writeByte(RESULT);
+        writeBytes(result == null ? EMPTY_BYTE_ARRAY : result);
+        endEvent();
+    }
+
+    public void error(Exception error) {
+        writeByte(ERROR);
+        writeBytes(format("%s: %s", error.getClass(), error.getMessage()).getBytes(StandardCharsets.UTF_8));
+        endEvent();
+    }
+
+    /**
+     * Ends the trace and writes out what is buffered
+     */
+    public void close() {
+        writeByte(END);
+        writeBlock(true);
+        if (deferred == null) stopped = true;
+    }
+
+    /**
+     * Writes out the blocks of a deferred stream, the execution it traces has been committed
+     */
+    public void commit() {
+        if (deferred == null) return;
+        List<byte[]> blocks = deferred;
+        deferred = null;
+        for (int i = 0; i < blocks.size() && !stopped; i++) {
+            byte[] block = blocks.get(i);
+            if (!writer.write(id, block, block.length, i == blocks.size() - 1)) stopped = true;
+        }
+        stopped = true;
+    }
+
+    /**
+     * Drops the trace of a deferred stream, the execution it traces has been thrown away
+     */
+    public void discard() {
+        deferred = null;
+        stopped = true;
+        size = 0;
+    }
+
+    private void endEvent() {
+        if (size >= BLOCK_SIZE) writeBlock(false);
+    }
+
+    private void writeBlock(boolean flush) {
+        if (deferred != null) {
+            deferred.add(Arrays.copyOf(buf, size));
+        } else if (!stopped && !writer.write(id, buf, size, flush)) {
+            stopped = true;
+        }
+        size = 0;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] data) {
+        writeBytes(data, data.length);
+    }
+
+    private void writeBytes(byte[] data, int len) {
+        writeVarLong(len);
+        ensure(len);
+        System.arraycopy(data, 0, buf, size, len);
+        size += len;
+    }
+
+    private void writeWord(DataWord word) {
+        byte[] data = word.getNoLeadZeroesData();
+        writeBytes(data == null ? EMPTY_BYTE_ARRAY : data);
+    }
+}
@@ -0,0 +1,184 @@
+package one.inve.contract.inve.vm.trace;
+
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.db.ByteArrayWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+
+/**
+ * Streams VM traces to a binary file as the transactions execute, instead of keeping {@link INVEProgramTrace}s
+ * with an {@link Op} object per executed operation in memory.
+ *
+ * Every sampled transaction gets a {@link TraceStream} which encodes its events into a small buffer and writes
+ * it out as a block tagged with the stream id whenever the buffer fills up, so memory use doesn't depend on the
+ * length of the execution and transactions executed in parallel may share the file. Transactions are sampled
+ * by their hash, so about every n-th one is traced no matter how often it is executed, and optionally by the
+ * called contract. Writing stops once the file reaches its size limit.
+ *
+ * File layout: {@link #MAGIC}, a version byte, then blocks of a stream id int, a length int and that many bytes
+ * of events, see {@link TraceStream}. {@link TraceReader} decodes the file back into {@link INVEProgramTrace}s.
+ */
+public class TraceWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger("VM");
+
+    public static final byte[] MAGIC = {'I', 'N', 'V', 'T'};
+    public static final int VERSION = 1;
+
+    private static volatile TraceWriter instance;
+    private static volatile boolean initialized;
+
+    private final DataOutputStream out;
+    private final long maxSize;
+    private final int sampleEvery;
+    private final Set<ByteArrayWrapper> contracts = new HashSet<>();
+
+    private final AtomicInteger streams = new AtomicInteger();
+    // guarded by this
+    private long size;
+    private boolean closed;
+
+    /**
+     * @param sampleEvery traces the transactions whose hash is a multiple of n
+     * @param contracts addresses of the traced contracts, empty traces all
+     * @param maxSize bytes after which nothing is written anymore
+     */
+    public TraceWriter(OutputStream out, int sampleEvery, Collection<byte[]> contracts, long maxSize) {
+        this.out = new DataOutputStream(out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, 1 << 16));
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.maxSize = maxSize;
+        for (byte[] contract : contracts) {
+            this.contracts.add(new ByteArrayWrapper(contract));
+        }
+        try {
+            this.out.write(MAGIC);
+            this.out.writeByte(VERSION);
+            size = MAGIC.length + 1;
+        } catch (IOException e) {
+            logger.error("Cannot write VM trace header", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return writer to a new file in the VM trace dir, null if structured trace is not streamed
+     */
+    public static TraceWriter getInstance() {
+        if (!initialized) {
+            synchronized (TraceWriter.class) {
+                if (!initialized) {
+                    instance = create(SystemProperties.getDefault());
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static TraceWriter create(SystemProperties config) {
+        if (!config.vmTrace() || !config.vmTraceStream()) return null;
+
+        File file = new File(new File(config.databaseDir(), config.vmTraceDir()),
+                "trace-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".bin");
+        Set<byte[]> contracts = new HashSet<>();
+        for (String contract : config.vmTraceContracts()) {
+            contracts.add(Hex.decode(contract.startsWith("0x") ? contract.substring(2) : contract));
+        }
+        try {
+            file.getParentFile().mkdirs();
+            TraceWriter ret = new TraceWriter(new FileOutputStream(file), config.vmTraceSampleEvery(),
+                    contracts, config.vmTraceMaxSize());
+            Runtime.getRuntime().addShutdownHook(new Thread(ret::close, "vm-trace-close"));
+            logger.info("Streaming VM trace to {}", file.getAbsolutePath());
+            return ret;
+        } catch (IOException e) {
+            logger.error(format("Cannot create VM trace file '%s': ", file.getAbsolutePath()), e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts the trace of a transaction if it is sampled
+     *
+     * @param txHash hash of the transaction
+     * @param contractAddress called or created contract
+     * @param deferred keeps the trace in memory until {@link TraceStream#commit()}, for executions whose
+     *                 result may be thrown away
+     * @return stream of the trace or null if the transaction is not traced
+     */
+    public TraceStream open(byte[] txHash, byte[] contractAddress, boolean deferred) {
+        if (isClosed()) return null;
+        if (!contracts.isEmpty() && !contracts.contains(new ByteArrayWrapper(contractAddress))) return null;
+        if (!isSampled(txHash)) return null;
+
+        return new TraceStream(this, streams.incrementAndGet(), txHash, contractAddress, deferred);
+    }
+
+    // the same decision for every execution of the transaction, unlike a counter of the executions
+    private boolean isSampled(byte[] txHash) {
+        if (sampleEvery == 1) return true;
+        long v = 0;
+        for (int i = Math.max(0, txHash.length - 8); i < txHash.length; i++) {
+            v = (v << 8) | (txHash[i] & 0xFF);
+        }
+        return Long.remainderUnsigned(v, sampleEvery) == 0;
+    }
+
+    /**
+     * @return false if the block has not been written as the file is full or closed
+     */
+    synchronized boolean write(int stream, byte[] buf, int len, boolean flush) {
+        if (closed) return false;
+        if (size + 8 + len > maxSize) {
+            logger.warn("VM trace reached its size limit of {} bytes, no more traces are written", maxSize);
+            close();
+            return false;
+        }
+        try {
+            out.writeInt(stream);
+            out.writeInt(len);
+            out.write(buf, 0, len);
+            if (flush) out.flush();
+            size += 8 + len;
+            return true;
+        } catch (IOException e) {
+            logger.error("Cannot write VM trace, no more traces are written", e);
+            close();
+            return false;
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.error("Cannot close VM trace", e);
+        }
+    }
+}
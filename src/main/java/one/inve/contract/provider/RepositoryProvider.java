@@ -1,12 +1,10 @@
 package one.inve.contract.provider;
 
 import one.inve.contract.ethplugin.core.Repository;
-import one.inve.contract.inve.INVERepositoryManager;
+import one.inve.contract.inve.INVERepositoryRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-
 /**
  * 底层数据库提供类：根据需要选择不同的底层实现方案
  * @author 肖毅
@@ -15,19 +13,13 @@ import java.util.HashMap;
 public class RepositoryProvider {
     private static final Logger logger = LoggerFactory.getLogger("RepositoryProvider");
 
-    private static HashMap<String, Repository> TRACK;
-
+    /**
+     * 获取数据库操作类，不持有引用，该数据库此后不会被空闲关闭；短时使用请调用 acquireTrack
+     * @param dbId 数据库前缀
+     * @return
+     */
     public static Repository getTrack(String dbId) {
-        if(TRACK == null) {
-            TRACK = new HashMap<>();
-        }
-
-        Repository track = TRACK.get(dbId);
-        if(track == null) {
-            track = INVERepositoryManager.getRepoRoot(dbId);
-            TRACK.put(dbId, track);
-        }
-        return track;
+        return INVERepositoryRegistry.get(dbId);
     }
 
     /**
@@ -38,15 +30,30 @@ public class RepositoryProvider {
      * @return
      */
     public static Repository getTrackByPath(String cfgDir, String dbPath, String dbId) {
-        if(TRACK == null) {
-            TRACK = new HashMap<>();
-        }
+        return INVERepositoryRegistry.get(cfgDir, dbPath, dbId);
+    }
+
+    /**
+     * 获取数据库操作类并持有引用，使用完毕后必须调用 releaseTrack，持有引用期间该数据库不会被空闲关闭
+     * @param dbId 数据库前缀
+     * @return
+     */
+    public static Repository acquireTrack(String dbId) {
+        return INVERepositoryRegistry.acquire(dbId);
+    }
+
+    /**
+     * 同 acquireTrack，根据指定 root.cfg 文件路径以及 state 数据库路径打开数据库
+     * @param cfgDir root.cfg 的完整路径
+     * @param dbPath rocksDB 数据库的父路径
+     * @param dbId 数据库前缀
+     * @return
+     */
+    public static Repository acquireTrackByPath(String cfgDir, String dbPath, String dbId) {
+        return INVERepositoryRegistry.acquire(cfgDir, dbPath, dbId);
+    }
 
-        Repository track = TRACK.get(dbId);
-        if(track == null) {
-            track = INVERepositoryManager.getRepoRoot(cfgDir, dbPath, dbId);
-            TRACK.put(dbId, track);
-        }
-        return track;
+    public static void releaseTrack(String dbId) {
+        INVERepositoryRegistry.release(dbId);
     }
-}
\ No newline at end of file
+}
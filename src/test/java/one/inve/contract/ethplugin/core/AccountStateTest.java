@@ -0,0 +1,72 @@
+package one.inve.contract.ethplugin.core;
+
+import one.inve.contract.ethplugin.util.RLP;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Decoding of encoded accounts, malformed input fails with the exceptions of the former {@code RLP.decode2} decoder
+ */
+public class AccountStateTest {
+
+    private static final byte[] ROOT = Hex.decode("56e81f171bcc55a6ff8345e692c0f86e5b48e01b996cadc001622fb5e363b421");
+    private static final byte[] CODE_HASH = Hex.decode("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470");
+
+    @Test
+    public void testRoundTrip() {
+        AccountState account = new AccountState(BigInteger.valueOf(7), new BigInteger("1000000000000000000000"),
+                ROOT, CODE_HASH);
+        AccountState decoded = new AccountState(account.getEncoded());
+
+        assertEquals(account.getNonce(), decoded.getNonce());
+        assertEquals(account.getBalance(), decoded.getBalance());
+        assertArrayEquals(ROOT, decoded.getStateRoot());
+        assertArrayEquals(CODE_HASH, decoded.getCodeHash());
+    }
+
+    @Test
+    public void testExtraItemsIgnored() {
+        AccountState decoded = new AccountState(RLP.encodeList(RLP.encodeBigInteger(BigInteger.ONE),
+                RLP.encodeBigInteger(BigInteger.TEN), RLP.encodeElement(ROOT), RLP.encodeElement(CODE_HASH),
+                RLP.encodeElement(new byte[]{1})));
+
+        assertEquals(BigInteger.TEN, decoded.getBalance());
+        assertArrayEquals(CODE_HASH, decoded.getCodeHash());
+    }
+
+    @Test
+    public void testMalformed() {
+        // empty input
+        assertDecodeFails(IndexOutOfBoundsException.class, new byte[0]);
+        // an item instead of the list
+        assertDecodeFails(ClassCastException.class, RLP.encodeElement(ROOT));
+        // too few items
+        assertDecodeFails(IndexOutOfBoundsException.class, RLP.encodeList(RLP.encodeBigInteger(BigInteger.ONE),
+                RLP.encodeBigInteger(BigInteger.TEN), RLP.encodeElement(ROOT)));
+        // data after the list
+        assertDecodeFails(RuntimeException.class, Hex.decode("c48080808080"));
+        // truncated item
+        assertDecodeFails(RuntimeException.class, Hex.decode("c4808080a0"));
+        // item running past the end of its enclosing list
+        assertDecodeFails(RuntimeException.class, Hex.decode("c7 8080 c28201 8080".replace(" ", "")));
+        // single byte encoded as byte string
+        assertDecodeFails(RuntimeException.class, Hex.decode("c5808080 8101".replace(" ", "")));
+        // length with leading zeros
+        assertDecodeFails(RuntimeException.class, Hex.decode("c6808080 b90038".replace(" ", "")));
+    }
+
+    private static void assertDecodeFails(Class<? extends RuntimeException> expected, byte[] rlp) {
+        try {
+            new AccountState(rlp);
+            fail("Malformed account decoded: " + Hex.toHexString(rlp));
+        } catch (RuntimeException e) {
+            assertEquals(Hex.toHexString(rlp), expected, e.getClass());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package one.inve.contract.ethplugin.core;
+
+import one.inve.contract.ethplugin.util.RLP;
+import one.inve.contract.ethplugin.vm.DataWord;
+import one.inve.contract.ethplugin.vm.LogInfo;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Decoding of encoded receipts, malformed input fails with the exceptions of the former {@code RLP.decode2} decoder
+ */
+public class TransactionReceiptTest {
+
+    private static final byte[] ADDRESS = Hex.decode("cd2a3d9f938e13cd947ec05abc7fe734df8dd826");
+
+    private static TransactionReceipt receipt() {
+        LogInfo log = new LogInfo(ADDRESS, Collections.singletonList(DataWord.of(42)), new byte[]{1, 2, 3});
+        TransactionReceipt receipt = new TransactionReceipt(new byte[]{1}, new byte[]{0x52, 0x08},
+                new Bloom(new byte[256]), Collections.singletonList(log));
+        receipt.setGasUsed(21000);
+        receipt.setExecutionResult(new byte[]{9});
+        receipt.setError("out of gas");
+        return receipt;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        TransactionReceipt decoded = new TransactionReceipt(receipt().getEncoded());
+
+        assertArrayEquals(new byte[]{1}, decoded.getPostTxState());
+        assertArrayEquals(new byte[]{0x52, 0x08}, decoded.getCumulativeGas());
+        assertArrayEquals(receipt().getGasUsed(), decoded.getGasUsed());
+        assertArrayEquals(new byte[]{9}, decoded.getExecutionResult());
+        assertEquals("out of gas", decoded.getError());
+        assertEquals(1, decoded.getLogInfoList().size());
+        assertArrayEquals(ADDRESS, decoded.getLogInfoList().get(0).getAddress());
+        assertEquals(DataWord.of(42), decoded.getLogInfoList().get(0).getTopics().get(0));
+        assertArrayEquals(receipt().getEncoded(), decoded.getEncoded());
+    }
+
+    @Test
+    public void testMalformed() {
+        byte[] state = RLP.encodeElement(new byte[]{1});
+        byte[] bloom = RLP.encodeElement(new byte[256]);
+        byte[] logs = RLP.encodeList();
+        byte[] valid = receipt().getEncoded();
+
+        assertDecodeFails(IndexOutOfBoundsException.class, new byte[0]);
+        assertDecodeFails(ClassCastException.class, state);
+        // too few items, the execution result is missing
+        assertDecodeFails(IndexOutOfBoundsException.class, RLP.encodeList(state, state, bloom, logs, state));
+        // the logs are not a list
+        assertDecodeFails(ClassCastException.class, RLP.encodeList(state, state, bloom, state, state, state));
+        // the gas used is a list
+        assertDecodeFails(ClassCastException.class, RLP.encodeList(state, state, bloom, logs, logs, state));
+        // data after the receipt
+        byte[] trailing = Arrays.copyOf(valid, valid.length + 1);
+        trailing[valid.length] = (byte) 0x80;
+        assertDecodeFails(RuntimeException.class, trailing);
+        // truncated receipt
+        assertDecodeFails(RuntimeException.class, Arrays.copyOf(valid, valid.length - 1));
+        // malformed log, rejected although the logs are decoded on first access
+        assertDecodeFails(RuntimeException.class, RLP.encodeList(state, state, bloom, Hex.decode("c3c28201"), state, state));
+    }
+
+    private static void assertDecodeFails(Class<? extends RuntimeException> expected, byte[] rlp) {
+        try {
+            new TransactionReceipt(rlp);
+            fail("Malformed receipt decoded: " + Hex.toHexString(rlp));
+        } catch (RuntimeException e) {
+            assertEquals(Hex.toHexString(rlp), expected, e.getClass());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package one.inve.contract.ethplugin.crypto.zksnark;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static one.inve.contract.ethplugin.crypto.zksnark.Params.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Montgomery arithmetic of {@link Fp} and {@link Fp2} compared with {@link BigInteger} arithmetic mod p
+ */
+public class FpTest {
+
+    private static final BigInteger TWO_256 = BigInteger.ONE.shiftLeft(256);
+    private static final int ROUNDS = 2000;
+
+    private final Random random = new Random(0x5eed);
+    private final List<BigInteger> values = values();
+
+    private List<BigInteger> values() {
+        List<BigInteger> v = new ArrayList<>();
+        v.add(BigInteger.ZERO);
+        v.add(BigInteger.ONE);
+        v.add(BigInteger.valueOf(2));
+        v.add(P.subtract(BigInteger.ONE));
+        v.add(P.subtract(BigInteger.valueOf(2)));
+        v.add(P.shiftRight(1));
+        v.add(BigInteger.ONE.shiftLeft(253));
+        v.add(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+        // not less than p
+        v.add(P);
+        v.add(P.add(BigInteger.ONE));
+        v.add(TWO_256.subtract(BigInteger.ONE));
+        for (int i = 0; i < 200; i++) {
+            v.add(new BigInteger(254, random).mod(P));
+        }
+        for (int i = 0; i < 20; i++) {
+            v.add(P.add(new BigInteger(255, random)).mod(TWO_256).max(P));
+        }
+        return v;
+    }
+
+    private BigInteger any() {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    @Test
+    public void testValidity() {
+        assertTrue(Fp.create(BigInteger.ZERO).isValid());
+        assertTrue(Fp.create(P.subtract(BigInteger.ONE)).isValid());
+        assertFalse(Fp.create(P).isValid());
+        assertFalse(Fp.create(P.add(BigInteger.ONE)).isValid());
+        assertFalse(Fp.create(TWO_256.subtract(BigInteger.ONE)).isValid());
+
+        // p is not a zero element, results of arithmetic are always valid
+        assertFalse(Fp.create(P).isZero());
+        assertTrue(Fp.create(P).add(Fp.ZERO).isValid());
+        assertTrue(Fp.create(P).add(Fp.ZERO).isZero());
+
+        assertFalse(Fp2.create(P, BigInteger.ZERO).isValid());
+        assertFalse(Fp2.create(BigInteger.ZERO, P).isValid());
+        assertTrue(Fp2.create(P.subtract(BigInteger.ONE), BigInteger.ZERO).isValid());
+    }
+
+    @Test
+    public void testZero() {
+        assertSame(Fp.ZERO, Fp.ZERO.negate());
+        assertTrue(Fp.create(BigInteger.ZERO).negate().isZero());
+        assertTrue(Fp2.ZERO.negate().isZero());
+
+        try {
+            Fp.ZERO.inverse();
+            fail("Zero has no inverse");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+        try {
+            Fp2.ZERO.inverse();
+            fail("Zero has no inverse");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFp() {
+        for (int i = 0; i < ROUNDS; i++) {
+            BigInteger x = any(), y = any();
+            Fp a = Fp.create(x), b = Fp.create(y);
+
+            assertEquals(x.mod(P), a.toBigInteger());
+            assertFp(x.add(y), a.add(b));
+            assertFp(x.subtract(y), a.sub(b));
+            assertFp(x.multiply(y), a.mul(b));
+            assertFp(x.multiply(x), a.squared());
+            assertFp(x.shiftLeft(1), a.dbl());
+            assertFp(x.negate(), a.negate());
+            if (x.mod(P).signum() != 0) {
+                assertFp(x.modInverse(P), a.inverse());
+                assertFp(BigInteger.ONE, a.mul(a.inverse()));
+            }
+        }
+    }
+
+    @Test
+    public void testFp2() {
+        for (int i = 0; i < ROUNDS; i++) {
+            BigInteger xa = any(), xb = any(), ya = any(), yb = any();
+            Fp2 x = Fp2.create(xa, xb), y = Fp2.create(ya, yb);
+
+            // (xa + xb * i)(ya + yb * i), i^2 = -1
+            assertFp2(xa.multiply(ya).subtract(xb.multiply(yb)), xa.multiply(yb).add(xb.multiply(ya)), x.mul(y));
+            assertFp2(xa.multiply(xa).subtract(xb.multiply(xb)), xa.multiply(xb).shiftLeft(1), x.squared());
+            assertFp2(xa.add(ya), xb.add(yb), x.add(y));
+            assertFp2(xa.subtract(ya), xb.subtract(yb), x.sub(y));
+            assertFp2(xa.negate(), xb.negate(), x.negate());
+
+            BigInteger norm = xa.multiply(xa).add(xb.multiply(xb)).mod(P);
+            if (norm.signum() != 0) {
+                BigInteger inv = norm.modInverse(P);
+                assertFp2(xa.multiply(inv), xb.negate().multiply(inv), x.inverse());
+                assertFp2(BigInteger.ONE, BigInteger.ZERO, x.mul(x.inverse()));
+            }
+        }
+    }
+
+    private static void assertFp(BigInteger expected, Fp actual) {
+        assertTrue(actual.isValid());
+        assertEquals(expected.mod(P), actual.toBigInteger());
+        assertEquals(Fp.create(expected.mod(P)), actual);
+    }
+
+    private static void assertFp2(BigInteger a, BigInteger b, Fp2 actual) {
+        assertFp(a, actual.a);
+        assertFp(b, actual.b);
+    }
+}
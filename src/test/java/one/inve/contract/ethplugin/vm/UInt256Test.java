@@ -0,0 +1,132 @@
+package one.inve.contract.ethplugin.vm;
+
+import one.inve.contract.ethplugin.util.ByteUtil;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link DataWord} arithmetic on {@link UInt256} limbs compared with {@link BigInteger} arithmetic mod 2^256
+ */
+public class UInt256Test {
+
+    private static final BigInteger MOD = DataWord._2_256;
+    private static final BigInteger MIN = BigInteger.ONE.shiftLeft(255);
+    private static final int ROUNDS = 5000;
+
+    private final Random random = new Random(0x256);
+    private final List<BigInteger> values = values();
+
+    private List<BigInteger> values() {
+        List<BigInteger> v = new ArrayList<>();
+        for (long i = 0; i <= 3; i++) {
+            v.add(BigInteger.valueOf(i));
+        }
+        v.add(DataWord.MAX_VALUE);                      // -1
+        v.add(DataWord.MAX_VALUE.subtract(BigInteger.ONE));
+        v.add(MIN);
+        v.add(MIN.add(BigInteger.ONE));
+        v.add(MIN.subtract(BigInteger.ONE));
+        for (int i = 1; i < 4; i++) {
+            v.add(BigInteger.ONE.shiftLeft(64 * i));
+            v.add(BigInteger.ONE.shiftLeft(64 * i).subtract(BigInteger.ONE));
+        }
+        for (int i = 0; i < 32; i++) {
+            v.add(BigInteger.valueOf(8 * i + 7));        // shift and sign extension arguments
+            v.add(BigInteger.valueOf(0x80).shiftLeft(8 * i));
+        }
+        for (int i = 0; i < 300; i++) {
+            // any length, so short divisors and dividends are common
+            v.add(new BigInteger(random.nextInt(257), random));
+            // the top bit set
+            v.add(new BigInteger(255, random).or(MIN));
+        }
+        return v;
+    }
+
+    private BigInteger any() {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static DataWord word(BigInteger v) {
+        return DataWord.of(ByteUtil.copyToArray(v.mod(MOD)));
+    }
+
+    private static BigInteger signed(BigInteger v) {
+        return v.testBit(255) ? v.subtract(MOD) : v;
+    }
+
+    @Test
+    public void testArithmetic() {
+        for (int i = 0; i < ROUNDS; i++) {
+            BigInteger a = any(), b = any(), m = any();
+            DataWord x = word(a), y = word(b), z = word(m);
+            BigInteger sa = signed(a), sb = signed(b);
+
+            assertWord(a.add(b), x.add(y));
+            assertWord(a.subtract(b), x.sub(y));
+            assertWord(a.multiply(b), x.mul(y));
+            assertWord(b.signum() == 0 ? BigInteger.ZERO : a.divide(b), x.div(y));
+            assertWord(b.signum() == 0 ? BigInteger.ZERO : a.mod(b), x.mod(y));
+            // truncates toward zero, MIN_VALUE / -1 overflows to MIN_VALUE
+            assertWord(b.signum() == 0 ? BigInteger.ZERO : sa.divide(sb), x.sDiv(y));
+            // the sign follows the dividend
+            assertWord(b.signum() == 0 ? BigInteger.ZERO : sa.remainder(sb), x.sMod(y));
+            assertWord(m.signum() == 0 ? BigInteger.ZERO : a.add(b).mod(m), x.addmod(y, z));
+            assertWord(m.signum() == 0 ? BigInteger.ZERO : a.multiply(b).mod(m), x.mulmod(y, z));
+            assertWord(a.modPow(b, MOD), x.exp(y));
+
+            int n = b.compareTo(BigInteger.valueOf(256)) < 0 ? b.intValue() : 256;
+            assertWord(a.shiftLeft(n), x.shiftLeft(y));
+            assertWord(a.shiftRight(n), x.shiftRight(y));
+            assertWord(sa.shiftRight(n), x.shiftRightSigned(y));
+
+            int k = b.mod(BigInteger.valueOf(32)).intValue();
+            BigInteger low = a.mod(BigInteger.ONE.shiftLeft(8 * k + 8));
+            assertWord(low.testBit(8 * k + 7) ? low.subtract(BigInteger.ONE.shiftLeft(8 * k + 8)) : low,
+                    x.signExtend((byte) k));
+
+            // operands keep their values and cached limbs
+            assertWord(a, x);
+            assertWord(b, y);
+            assertWord(m, z);
+        }
+    }
+
+    @Test
+    public void testByZero() {
+        long[] zero = new long[4];
+        long[] a = UInt256.fromBytes(word(MIN.add(BigInteger.TEN)).getData());
+
+        assertArrayEquals(zero, UInt256.div(a, zero));
+        assertArrayEquals(zero, UInt256.mod(a, zero));
+        assertArrayEquals(zero, UInt256.sdiv(a, zero));
+        assertArrayEquals(zero, UInt256.smod(a, zero));
+        assertArrayEquals(zero, UInt256.addmod(a, a, zero));
+        assertArrayEquals(zero, UInt256.mulmod(a, a, zero));
+        assertArrayEquals(new long[] {1, 0, 0, 0}, UInt256.exp(a, zero));
+        assertArrayEquals(new long[] {1, 0, 0, 0}, UInt256.exp(zero, zero));
+    }
+
+    @Test
+    public void testMinValueByMinusOne() {
+        DataWord min = word(MIN);
+        DataWord minusOne = word(BigInteger.ONE.negate());
+
+        assertEquals(min, min.sDiv(minusOne));
+        assertEquals(DataWord.ZERO, min.sMod(minusOne));
+        assertEquals(min, min.negate());
+    }
+
+    private static void assertWord(BigInteger expected, DataWord actual) {
+        DataWord word = word(expected);
+        assertEquals(word, actual);
+        assertArrayEquals(UInt256.fromBytes(word.getData()), actual.limbs());
+    }
+}
@@ -0,0 +1,137 @@
+package one.inve.contract.inve;
+
+import one.inve.contract.ethplugin.config.SystemProperties;
+import one.inve.contract.ethplugin.core.Transaction;
+import one.inve.contract.ethplugin.datasource.inmem.HashMapDB;
+import one.inve.contract.ethplugin.db.BlockStoreDummy;
+import one.inve.contract.inve.vm.program.invoke.INVEProgramInvokeFactoryImpl;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static one.inve.contract.ethplugin.util.ByteUtil.longToBytesNoLeadZeroes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A batch of conflicting transactions executed in parallel ends in the state and receipts of serial execution
+ */
+public class INVEParallelTransactionExecutorTest {
+
+    private static final int SENDERS = 20;
+    private static final int CONTRACTS = 3;
+    private static final int TXS = 300;
+
+    // increments the storage slot given by the call data and logs the new value
+    private static final byte[] COUNTER = Hex.decode("6000358054600101806000529055602060006000a000");
+
+    private static byte[] address(int i) {
+        byte[] ret = new byte[20];
+        ret[0] = 1;
+        ret[18] = (byte) (i >> 8);
+        ret[19] = (byte) i;
+        return ret;
+    }
+
+    private static byte[] sender(int i) {
+        return address(i);
+    }
+
+    private static byte[] contract(int i) {
+        return address(1000 + i);
+    }
+
+    private static INVERepositoryRoot repository() {
+        INVERepositoryRoot repo = new INVERepositoryRoot(new HashMapDB<byte[]>(), new HashMapDB<byte[]>(), null);
+        for (int i = 0; i < SENDERS; i++) {
+            repo.addBalance(sender(i), new BigInteger("1000000000000000000000"));
+        }
+        for (int i = 0; i < CONTRACTS; i++) {
+            repo.saveCode(contract(i), COUNTER);
+        }
+        repo.commit();
+        return repo;
+    }
+
+    // few senders, contracts and slots, so many transactions read what an earlier one has written
+    private static List<Transaction> transactions() {
+        Random random = new Random(7);
+        long[] nonces = new long[SENDERS];
+        List<Transaction> ret = new ArrayList<>();
+        for (int i = 0; i < TXS; i++) {
+            int from = random.nextInt(SENDERS);
+            long nonce = nonces[from]++;
+            byte[] to;
+            byte[] data;
+            long value = 0;
+            long gas = 100000;
+            switch (random.nextInt(5)) {
+                case 0:
+                    // plain transfer between senders
+                    to = sender(random.nextInt(SENDERS));
+                    data = new byte[0];
+                    value = 1 + random.nextInt(1000);
+                    break;
+                case 1:
+                    // runs out of gas in the contract
+                    to = contract(random.nextInt(CONTRACTS));
+                    data = new byte[32];
+                    gas = 21700;
+                    break;
+                case 2:
+                    // wrong nonce, rejected
+                    nonce += 5;
+                    nonces[from]--;
+                    to = sender(random.nextInt(SENDERS));
+                    data = new byte[0];
+                    break;
+                default:
+                    to = contract(random.nextInt(CONTRACTS));
+                    data = new byte[32];
+                    data[31] = (byte) random.nextInt(4);
+            }
+            Transaction tx = new Transaction(longToBytesNoLeadZeroes(nonce), longToBytesNoLeadZeroes(1),
+                    longToBytesNoLeadZeroes(gas), to, longToBytesNoLeadZeroes(value), data);
+            tx.setSender(sender(from));
+            ret.add(tx);
+        }
+        return ret;
+    }
+
+    @Test
+    public void testSameAsSerial() {
+        INVERepositoryRoot serial = repository();
+        List<byte[]> serialReceipts = new ArrayList<>();
+        for (Transaction tx : transactions()) {
+            INVETransactionExecutor executor = new INVETransactionExecutor(tx, serial, new BlockStoreDummy(),
+                    new INVEProgramInvokeFactoryImpl(), SystemProperties.getDefault().getGenesis());
+            executor.init();
+            executor.execute();
+            executor.go();
+            executor.finalization();
+            serialReceipts.add(executor.getReceipt().getEncoded());
+        }
+        serial.commit();
+
+        INVERepositoryRoot parallel = repository();
+        List<INVEParallelTransactionExecutor.Result> results =
+                INVEParallelTransactionExecutor.execute(parallel, transactions());
+        parallel.commit();
+
+        assertEquals(TXS, results.size());
+        int reExecuted = 0;
+        for (int i = 0; i < TXS; i++) {
+            assertArrayEquals("receipt of tx " + i, serialReceipts.get(i),
+                    results.get(i).getExecutor().getReceipt().getEncoded());
+            if (results.get(i).isReExecuted()) reExecuted++;
+        }
+        assertArrayEquals(serial.getRoot(), parallel.getRoot());
+        // the batch did conflict
+        assertTrue(reExecuted > 0);
+    }
+}